@@ -0,0 +1,99 @@
+import java.util.HashMap;
+
+// Outcome of a batch of FleetCommands: a status for each command, in the order they were
+// given, and the message of each one that failed. Statuses are kept one byte per command.
+public class BatchResult {
+
+    private static final CommandStatus[] STATUSES = CommandStatus.values();
+
+    private byte[] statuses;
+    // Failure messages keyed by the command's position in the batch
+    private HashMap<Integer, String> messages;
+    private int failed;
+    private boolean aborted;
+    private int rollbackConflicts;
+
+    public BatchResult(int size) {
+        statuses = new byte[size];
+        messages = new HashMap<>();
+    }
+
+    public void setFailure(int index, CommandStatus status, String message) {
+        if (statuses[index] == CommandStatus.OK.ordinal()) {
+            failed++;
+        }
+        statuses[index] = (byte) status.ordinal();
+        messages.put(index, message);
+    }
+
+    // Marks every command but the one at failedIndex as aborted
+    public void abort(int failedIndex) {
+        aborted = true;
+        for (int i = 0; i < statuses.length; i++) {
+            if (i != failedIndex) {
+                statuses[i] = (byte) CommandStatus.ABORTED.ordinal();
+            }
+        }
+        failed = statuses.length;
+    }
+
+    // Marks a command of an aborted batch that could not be undone, see CommandStatus.ROLLBACK_CONFLICT
+    public void setRollbackConflict(int index, String message) {
+        statuses[index] = (byte) CommandStatus.ROLLBACK_CONFLICT.ordinal();
+        messages.put(index, message);
+        rollbackConflicts++;
+    }
+
+    public int size() {
+        return statuses.length;
+    }
+
+    public CommandStatus getStatus(int index) {
+        return STATUSES[statuses[index]];
+    }
+
+    public boolean isSucceeded(int index) {
+        return statuses[index] == CommandStatus.OK.ordinal();
+    }
+
+    // The failure message of the command at index, or null if it succeeded or was aborted
+    public String getMessage(int index) {
+        return messages.get(index);
+    }
+
+    public int getSucceeded() {
+        return statuses.length - failed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    // Whether an atomic batch was undone because one of its commands failed
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    // How many commands of an aborted batch are still applied, see setRollbackConflict()
+    public int getRollbackConflicts() {
+        return rollbackConflicts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format("Commands succeeded: %d%nCommands failed: %d%n", getSucceeded(), failed));
+        for (int i = 0; i < statuses.length; i++) {
+            String message = messages.get(i);
+            if (message != null) {
+                result.append(String.format("Command %d: %s%n", i + 1, message));
+            }
+        }
+        if (aborted && rollbackConflicts == 0) {
+            result.append(String.format("Batch aborted, no command was applied%n"));
+        }
+        else if (aborted) {
+            result.append(String.format("Batch aborted, %d commands could not be undone%n", rollbackConflicts));
+        }
+        return result.toString();
+    }
+}
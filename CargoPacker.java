@@ -0,0 +1,408 @@
+import vehicles.Vehicle;
+import vehicles.interfaces.CargoCarrier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Packs consignments onto as few cargo carriers as it can, see FleetManager.planLoading().
+// A vehicle takes consignments up to its spare capacity, its cargo capacity less the cargo
+// it already has.
+//
+// First fit decreasing goes through the consignments from the heaviest down and puts each
+// on the first vehicle with room for it. The vehicles are taken from the most spare
+// capacity down, so the big ones fill first and the fewest are used. A segment tree of the
+// most room under each node finds the first vehicle with room without looking at the full
+// ones, so millions of consignments take seconds.
+//
+// The plan is then improved by emptying vehicles. Each of the lightest loaded vehicles is
+// paired with the others in turn, and the consignments of both are shared out again so that
+// the other is as full as it can be, with the rest left to the light one. No step makes a
+// vehicle lighter than it was without making the light one lighter still, so light vehicles
+// are drained until, with luck, they are empty. The vehicles used are split into small runs,
+// a different way on each pass, and the runs are improved on the pool at the same time, as
+// no consignment moves from one run to another. The runs do not depend on the pool, so
+// neither does the plan. Last, the consignments still left over are fitted into the room
+// the passes freed.
+public class CargoPacker {
+
+    // Vehicles used in each run of the improvement
+    private static final int RUN = 64;
+    // Times the vehicles used are split into runs and improved
+    private static final int PASSES = 4;
+    // The lightest vehicles of each run that are emptied into the others
+    private static final int CANDIDATES = 16;
+    // Tries at sharing out the consignments of each pair
+    private static final int NODES = 64;
+
+    // The cargo carriers with room, most room first, then in fleet order
+    private final Vehicle[] vehicles;
+    // Their room when the packer was made
+    private final double[] spare;
+
+    public CargoPacker(Vehicle[] fleet) {
+        List<Vehicle> carriers = new ArrayList<>();
+        List<Double> room = new ArrayList<>();
+        for (var v : fleet) {
+            if (v instanceof CargoCarrier c && c.getCargoCapacity() - c.getCurrentCargo() > 0) {
+                carriers.add(v);
+                room.add(c.getCargoCapacity() - c.getCurrentCargo());
+            }
+        }
+        Integer[] order = new Integer[carriers.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(room.get(b), room.get(a)));
+        vehicles = new Vehicle[order.length];
+        spare = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            vehicles[i] = carriers.get(order[i]);
+            spare[i] = room.get(order[i]);
+        }
+    }
+
+    public LoadPlan pack(double[] consignments, ForkJoinPool pool) {
+        for (double weight : consignments) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("Consignment weight must be finite and not negative");
+            }
+        }
+        double[] room = spare.clone();
+        int[] vehicleOf = firstFitDecreasing(consignments, room);
+        for (int pass = 0; pass < PASSES; pass++) {
+            improve(consignments, vehicleOf, room, pool, pass);
+        }
+        placeUnplaced(consignments, vehicleOf, room);
+        // Rooms only go down by what fits, so no load is above the vehicle's spare capacity
+        double[] loads = new double[vehicles.length];
+        for (int v = 0; v < vehicles.length; v++) {
+            loads[v] = spare[v] - room[v];
+        }
+        return new LoadPlan(consignments, vehicles, vehicleOf, loads);
+    }
+
+    private int[] firstFitDecreasing(double[] consignments, double[] room) {
+        int n = consignments.length;
+        // Adding zero turns -0.0 into 0.0, which sorts with it
+        double[] sorted = new double[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = consignments[i] + 0.0;
+        }
+        Arrays.sort(sorted);
+        RoomTree tree = new RoomTree(room);
+        // The vehicle for each place in sorted, filled from the heaviest down
+        int[] slots = new int[n];
+        for (int s = n - 1; s >= 0; s--) {
+            int v = tree.first(sorted[s]);
+            slots[s] = v;
+            if (v >= 0) {
+                room[v] -= sorted[s];
+                tree.set(v, room[v]);
+            }
+        }
+        // Consignments of the same weight take that weight's places in index order. Sorting
+        // the weights alone is far quicker than sorting the consignments by weight.
+        int[] used = new int[n];
+        int[] vehicleOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            int first = firstOf(sorted, consignments[i] + 0.0);
+            vehicleOf[i] = slots[first + used[first]++];
+        }
+        return vehicleOf;
+    }
+
+    // Emptying vehicles frees room, so the consignments first fit could not place are tried
+    // again, heaviest first, on the room left. Afterwards none of them fits on any vehicle.
+    private void placeUnplaced(double[] consignments, int[] vehicleOf, double[] room) {
+        int count = 0;
+        for (int v : vehicleOf) {
+            if (v < 0) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        int[] unplaced = new int[count];
+        double[] weights = new double[count];
+        count = 0;
+        for (int i = 0; i < vehicleOf.length; i++) {
+            if (vehicleOf[i] < 0) {
+                unplaced[count] = i;
+                weights[count++] = consignments[i];
+            }
+        }
+        int[] placed = firstFitDecreasing(weights, room);
+        for (int k = 0; k < count; k++) {
+            vehicleOf[unplaced[k]] = placed[k];
+        }
+    }
+
+    // The first place of the weight in sorted
+    private static int firstOf(double[] sorted, double weight) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < weight) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void improve(double[] consignments, int[] vehicleOf, double[] room, ForkJoinPool pool, int pass) {
+        // Each vehicle's consignments as a list through next
+        int[] head = new int[vehicles.length];
+        int[] next = new int[consignments.length];
+        Arrays.fill(head, -1);
+        for (int i = consignments.length - 1; i >= 0; i--) {
+            int v = vehicleOf[i];
+            if (v >= 0) {
+                next[i] = head[v];
+                head[v] = i;
+            }
+        }
+        int[] used = new int[vehicles.length];
+        int count = 0;
+        for (int v = 0; v < vehicles.length; v++) {
+            if (head[v] >= 0) {
+                used[count++] = v;
+            }
+        }
+        // Every other pass takes every so many vehicles for a run, which mixes the ones filled
+        // first with the heaviest consignments and the ones filled last. The passes between
+        // take them as they come, half a run on from where the first fill left off.
+        int runs = (count + RUN - 1) / RUN;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int r = 0; r < runs; r++) {
+            int[] members;
+            if (pass % 2 == 0) {
+                members = new int[(count - r + runs - 1) / runs];
+                for (int j = 0; j < members.length; j++) {
+                    members[j] = used[r + j * runs];
+                }
+            }
+            else {
+                int start = r == 0 ? 0 : r * RUN - RUN / 2;
+                int end = r == runs - 1 ? count : (r + 1) * RUN - RUN / 2;
+                members = Arrays.copyOfRange(used, start, end);
+            }
+            // Each run only touches its own vehicles and their consignments
+            Run run = new Run(consignments, vehicleOf, room, members, head, next);
+            tasks.add(pool.submit(run::improve));
+        }
+        for (var task : tasks) {
+            task.join();
+        }
+    }
+
+    // The most room under each node of a tree over the vehicles, in order
+    private static final class RoomTree {
+
+        private final int leaves;
+        private final double[] most;
+
+        private RoomTree(double[] room) {
+            leaves = Integer.highestOneBit(Math.max(1, room.length - 1)) << 1;
+            most = new double[2 * leaves];
+            Arrays.fill(most, Double.NEGATIVE_INFINITY);
+            System.arraycopy(room, 0, most, leaves, room.length);
+            for (int node = leaves - 1; node > 0; node--) {
+                most[node] = Math.max(most[2 * node], most[2 * node + 1]);
+            }
+        }
+
+        private void set(int v, double room) {
+            int node = leaves + v;
+            most[node] = room;
+            for (node >>= 1; node > 0; node >>= 1) {
+                most[node] = Math.max(most[2 * node], most[2 * node + 1]);
+            }
+        }
+
+        // The first vehicle with room for the weight, or -1
+        private int first(double weight) {
+            if (most[1] < weight) {
+                return -1;
+            }
+            int node = 1;
+            while (node < leaves) {
+                node = most[2 * node] >= weight ? 2 * node : 2 * node + 1;
+            }
+            return node - leaves;
+        }
+    }
+
+    // A run of vehicles being emptied into each other, with their consignments in lists
+    // that grow as they take more
+    private final class Run {
+
+        private final double[] consignments;
+        private final int[] vehicleOf;
+        private final double[] room;
+        private final int[] members;
+        private final int[][] items;
+        private final int[] counts;
+        // The search for the fullest load of a pair
+        private double[] weights = new double[8];
+        private int[] pooled = new int[8];
+        private double[] after = new double[9];
+        private boolean[] pick = new boolean[8];
+        private boolean[] bestPick = new boolean[8];
+        private int size;
+        private double limit;
+        private double best;
+        private boolean better;
+        private int nodes;
+
+        private Run(double[] consignments, int[] vehicleOf, double[] room, int[] members, int[] head, int[] next) {
+            this.consignments = consignments;
+            this.vehicleOf = vehicleOf;
+            this.room = room;
+            this.members = members;
+            items = new int[members.length][];
+            counts = new int[members.length];
+            for (int m = 0; m < members.length; m++) {
+                items[m] = new int[4];
+                for (int i = head[members[m]]; i >= 0; i = next[i]) {
+                    add(m, i);
+                }
+            }
+        }
+
+        private void improve() {
+            Integer[] lightest = new Integer[members.length];
+            for (int m = 0; m < members.length; m++) {
+                lightest[m] = m;
+            }
+            Arrays.sort(lightest, (a, b) -> Double.compare(load(a), load(b)));
+            for (int c = 0; c < Math.min(CANDIDATES, members.length); c++) {
+                int m = lightest[c];
+                double elsewhere = 0;
+                for (int other = 0; other < members.length; other++) {
+                    if (other != m && counts[other] > 0) {
+                        elsewhere += room[members[other]];
+                    }
+                }
+                if (counts[m] == 0 || load(m) > elsewhere) {
+                    continue;
+                }
+                // The heaviest first, as they have the least room to spare
+                for (int k = members.length - 1; k >= 0 && counts[m] > 0; k--) {
+                    int other = lightest[k];
+                    if (other != m && counts[other] > 0) {
+                        repack(other, m);
+                    }
+                }
+            }
+            for (int m = 0; m < members.length; m++) {
+                for (int k = 0; k < counts[m]; k++) {
+                    vehicleOf[items[m][k]] = members[m];
+                }
+            }
+        }
+
+        private double load(int m) {
+            return spare[members[m]] - room[members[m]];
+        }
+
+        // Fills the first member as fully as it can from the consignments of both, leaving
+        // the rest to the second, if that loads the first more than it has now
+        private void repack(int full, int light) {
+            size = counts[full] + counts[light];
+            if (size > weights.length) {
+                int capacity = Math.max(size, 2 * weights.length);
+                weights = new double[capacity];
+                pooled = new int[capacity];
+                after = new double[capacity + 1];
+                pick = new boolean[capacity];
+                bestPick = new boolean[capacity];
+            }
+            System.arraycopy(items[full], 0, pooled, 0, counts[full]);
+            System.arraycopy(items[light], 0, pooled, counts[full], counts[light]);
+            sortHeaviestFirst();
+            best = 0;
+            for (int k = 0; k < counts[full]; k++) {
+                best += consignments[items[full][k]];
+            }
+            after[size] = 0;
+            for (int k = size - 1; k >= 0; k--) {
+                after[k] = after[k + 1] + weights[k];
+            }
+            limit = spare[members[full]];
+            better = false;
+            nodes = 0;
+            search(0, 0);
+            if (!better) {
+                return;
+            }
+            double rest = 0;
+            for (int k = 0; k < size; k++) {
+                if (!bestPick[k]) {
+                    rest += weights[k];
+                }
+            }
+            if (rest > spare[members[light]]) {
+                return;
+            }
+            counts[full] = 0;
+            counts[light] = 0;
+            for (int k = 0; k < size; k++) {
+                add(bestPick[k] ? full : light, pooled[k]);
+            }
+            room[members[full]] = limit - best;
+            room[members[light]] = spare[members[light]] - rest;
+        }
+
+        private void sortHeaviestFirst() {
+            for (int k = 1; k < size; k++) {
+                int i = pooled[k];
+                int j = k;
+                while (j > 0 && consignments[pooled[j - 1]] < consignments[i]) {
+                    pooled[j] = pooled[j - 1];
+                    j--;
+                }
+                pooled[j] = i;
+            }
+            for (int k = 0; k < size; k++) {
+                weights[k] = consignments[pooled[k]];
+            }
+        }
+
+        // Tries each consignment from k on in or out, heaviest first, giving up on the ones
+        // that cannot beat the best load so far, and on the pair after NODES tries
+        private void search(int k, double sum) {
+            if (++nodes > NODES) {
+                return;
+            }
+            if (sum > best) {
+                best = sum;
+                better = true;
+                System.arraycopy(pick, 0, bestPick, 0, size);
+            }
+            if (k == size || sum + after[k] <= best) {
+                return;
+            }
+            if (sum + weights[k] <= limit) {
+                pick[k] = true;
+                search(k + 1, sum + weights[k]);
+                pick[k] = false;
+            }
+            search(k + 1, sum);
+        }
+
+        private void add(int m, int i) {
+            if (counts[m] == items[m].length) {
+                items[m] = Arrays.copyOf(items[m], 2 * counts[m]);
+            }
+            items[m][counts[m]++] = i;
+        }
+    }
+}
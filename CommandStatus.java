@@ -0,0 +1,18 @@
+// How a FleetCommand of a batch went
+public enum CommandStatus {
+    OK,
+    // No vehicle with the command's ID, or it was removed earlier in the batch
+    NOT_FOUND,
+    // A vehicle with the same ID is already in the fleet
+    DUPLICATE,
+    // The vehicle cannot do what the command asks, e.g. load cargo onto a Car
+    NOT_SUPPORTED,
+    INVALID_OPERATION,
+    OVERLOAD,
+    INSUFFICIENT_FUEL,
+    // Not applied, or undone, because another command of an atomic batch failed
+    ABORTED,
+    // Applied, and then left as it was when its atomic batch failed, because changes made
+    // to the vehicle since by other threads left no room for undoing it
+    ROLLBACK_CONFLICT
+}
@@ -0,0 +1,79 @@
+import vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of FleetManager.planDispatch(): the vehicle given each trip, or null if none could
+// take it, and the fuel it will use. Nothing has been done to the vehicles yet.
+public class DispatchPlan {
+
+    private final List<Trip> trips;
+    private final Vehicle[] vehicles;
+    private final double[] fuel;
+    private final boolean optimal;
+    private int assigned;
+    private double totalFuel;
+
+    public DispatchPlan(List<Trip> trips, boolean optimal) {
+        this.trips = trips;
+        this.optimal = optimal;
+        vehicles = new Vehicle[trips.size()];
+        fuel = new double[trips.size()];
+    }
+
+    public void assign(int trip, Vehicle v, double fuelUsed) {
+        if (vehicles[trip] == null) {
+            assigned++;
+        }
+        else {
+            totalFuel -= fuel[trip];
+        }
+        vehicles[trip] = v;
+        fuel[trip] = fuelUsed;
+        totalFuel += fuelUsed;
+    }
+
+    public List<Trip> getTrips() {
+        return Collections.unmodifiableList(trips);
+    }
+
+    public Vehicle getVehicle(int trip) {
+        return vehicles[trip];
+    }
+
+    public double getFuel(int trip) {
+        return fuel[trip];
+    }
+
+    public int getAssigned() {
+        return assigned;
+    }
+
+    public double getTotalFuel() {
+        return totalFuel;
+    }
+
+    // The trips no vehicle was given, by index
+    public List<Integer> getUnassigned() {
+        List<Integer> unassigned = new ArrayList<>();
+        for (int i = 0; i < vehicles.length; i++) {
+            if (vehicles[i] == null) {
+                unassigned.add(i);
+            }
+        }
+        return unassigned;
+    }
+
+    // Whether no other plan gives more trips a vehicle, or as many for less fuel. A greedy
+    // plan may be as good, but does not show it.
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Trips assigned: %d%nTrips unassigned: %d%nTotal fuel: %.2f%nOptimal: %s%n",
+                assigned, vehicles.length - assigned, totalFuel, optimal ? "Yes" : "Not shown");
+    }
+}
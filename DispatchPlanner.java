@@ -0,0 +1,885 @@
+import vehicles.Vehicle;
+import vehicles.interfaces.CargoCarrier;
+import vehicles.interfaces.FuelConsumable;
+import vehicles.interfaces.PassengerCarrier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+// Gives trips to vehicles for the least fuel, see FleetManager.planDispatch(). A vehicle can
+// take a trip if it has the fuel for the distance at its current efficiency and the spare
+// seats and cargo capacity, and it takes one trip at most. A vehicle that burns no fuel, such
+// as a cargo ship under sail, can take a trip of any distance for nothing.
+//
+// Trying every vehicle for every trip is out of the question for a large fleet, so the
+// vehicles are put in buckets by their spare seats and spare cargo capacity, in powers of
+// two, and each bucket is sorted by efficiency. A segment tree over each bucket holds the
+// most range, seats and cargo capacity below each node, which finds the first vehicle in a
+// bucket that can take a trip without looking at the ones that can't, and passes over whole
+// buckets with too few seats or too little capacity at the root. Merging the buckets gives
+// the vehicles that can take a trip from the cheapest up.
+//
+// Greedy planning gives the longest trips, with the most fuel at stake, the cheapest vehicle
+// left first. Optimal planning solves the assignment problem exactly, by shortest augmenting
+// paths with potentials, over the whole fleet. A trip's vehicles are only taken from the
+// merge as the searches reach them, so most trips only ever see their cheapest few.
+public class DispatchPlanner {
+
+    // Ranges only pass over vehicles, so rounding must not pass over one that can make a trip
+    private static final double RANGE_SLACK = 1 + 1e-9;
+    // An optimal plan gives up for a greedy one past this much work, or this many vehicles
+    // held in its searches, for each vehicle and trip. Trips that all want the same few
+    // vehicles can make every search go through all the trips before them.
+    private static final int WORK_PER_ENTRY = 256;
+    private static final int HELD_PER_ENTRY = 16;
+    // Small plans always finish
+    private static final long SMALLEST_SCALE = 1 << 16;
+
+    // The vehicles' state when the planner was made, by index in vehicles
+    private final Vehicle[] vehicles;
+    private final double[] efficiency;
+    private final double[] fuel;
+    // Minus the efficiency, minus infinity for a vehicle that burns no fuel, so that a lower
+    // rank never burns more fuel over the same distance
+    private final double[] rank;
+    private final double[] range;
+    private final int[] seats;
+    private final double[] cargo;
+    private final double lowestEfficiency;
+
+    // By the rank of their first vehicle
+    private final Bucket[] buckets;
+    // Where each vehicle is in the buckets
+    private final int[] bucketOf;
+    private final int[] positionOf;
+
+    public DispatchPlanner(Vehicle[] vehicles) {
+        this.vehicles = vehicles;
+        int n = vehicles.length;
+        efficiency = new double[n];
+        fuel = new double[n];
+        rank = new double[n];
+        range = new double[n];
+        seats = new int[n];
+        cargo = new double[n];
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            Vehicle v = vehicles[i];
+            efficiency[i] = v.getFuelEfficiency();
+            if (v instanceof FuelConsumable f && efficiency[i] != 0) {
+                fuel[i] = f.getFuelLevel();
+                rank[i] = -efficiency[i];
+                range[i] = fuel[i] * efficiency[i] * RANGE_SLACK;
+                lowest = Math.min(lowest, efficiency[i]);
+            }
+            else {
+                rank[i] = Double.NEGATIVE_INFINITY;
+                range[i] = Double.POSITIVE_INFINITY;
+            }
+            if (v instanceof PassengerCarrier p) {
+                seats[i] = Math.max(0, p.getPassengerCapacity() - p.getCurrentPassengers());
+            }
+            if (v instanceof CargoCarrier c) {
+                cargo[i] = Math.max(0, c.getCargoCapacity() - c.getCurrentCargo());
+            }
+        }
+        lowestEfficiency = lowest;
+
+        // Sorting the whole fleet once leaves every bucket in order as it is filled
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, this::compare);
+        HashMap<Integer, List<Integer>> members = new HashMap<>();
+        for (int i : order) {
+            members.computeIfAbsent(seatClass(seats[i]) * 2048 + cargoClass(cargo[i]), k -> new ArrayList<>()).add(i);
+        }
+        List<Bucket> filled = new ArrayList<>();
+        for (var list : members.values()) {
+            filled.add(new Bucket(list.stream().mapToInt(Integer::intValue).toArray()));
+        }
+        filled.sort(Comparator.comparing((Bucket b) -> b.members[0], this::compare));
+        buckets = filled.toArray(new Bucket[0]);
+        bucketOf = new int[n];
+        positionOf = new int[n];
+        for (int b = 0; b < buckets.length; b++) {
+            int[] bucketMembers = buckets[b].members;
+            for (int position = 0; position < bucketMembers.length; position++) {
+                bucketOf[bucketMembers[position]] = b;
+                positionOf[bucketMembers[position]] = position;
+            }
+        }
+    }
+
+    // Cheaper first, then the shorter range, so that a vehicle that can go further is kept for
+    // a trip that needs it, then by index so that plans never depend on how the fleet was bucketed
+    private int compare(int a, int b) {
+        int c = Double.compare(rank[a], rank[b]);
+        if (c == 0) {
+            c = Double.compare(range[a], range[b]);
+        }
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    private static int seatClass(int seats) {
+        return 32 - Integer.numberOfLeadingZeros(seats);
+    }
+
+    private static int cargoClass(double cargo) {
+        if (cargo <= 0) {
+            return 0;
+        }
+        return cargo < 1 ? 1 : 2 + Math.getExponent(cargo);
+    }
+
+    // The fuel a vehicle burns on a trip, worked out as tryMove() does
+    private double fuelFor(int vehicle, double distance) {
+        return rank[vehicle] == Double.NEGATIVE_INFINITY ? 0 : distance / efficiency[vehicle];
+    }
+
+    private boolean hasFuelFor(int vehicle, double distance) {
+        return rank[vehicle] == Double.NEGATIVE_INFINITY || distance / efficiency[vehicle] <= fuel[vehicle];
+    }
+
+    // Trips by distance, longest first
+    private static int[] longestFirst(List<Trip> trips) {
+        Integer[] order = new Integer[trips.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Double.compare(trips.get(b).distance(), trips.get(a).distance());
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    public DispatchPlan planGreedy(List<Trip> trips) {
+        DispatchPlan plan = new DispatchPlan(trips, false);
+        for (int t : longestFirst(trips)) {
+            Trip trip = trips.get(t);
+            Candidates candidates = new Candidates(trip);
+            int vehicle = candidates.next();
+            if (vehicle >= 0) {
+                candidates.take();
+                plan.assign(t, vehicles[vehicle], fuelFor(vehicle, trip.distance()));
+            }
+        }
+        // The planner can be used again
+        for (var bucket : buckets) {
+            bucket.restore();
+        }
+        return plan;
+    }
+
+    // An optimal plan, or the greedy one if finding it would take too long
+    public DispatchPlan planOptimal(List<Trip> trips) {
+        DispatchPlan plan = new Assignment(trips, longestFirst(trips)).solve();
+        return plan != null ? plan : planGreedy(trips);
+    }
+
+    // The vehicles of one bucket, in order, over segment trees of the most range, seats and
+    // cargo capacity under each node: one over every vehicle, and one that leaves out the
+    // vehicles taken by a trip until the planner is restored. An optimal plan also keeps the
+    // highest potential of the taken vehicles under each node.
+    private final class Bucket {
+
+        private final int[] members;
+        // The leaves of the trees start here, the ones past the members stay empty
+        private final int leaves;
+        private final double[] maxRange;
+        private final int[] maxSeats;
+        private final double[] maxCargo;
+        // Minus infinity where no vehicle is taken
+        private final double[] maxPotential;
+        private final double[] mostRange;
+        private final int[] mostSeats;
+        private final double[] mostCargo;
+        private final List<Integer> taken = new ArrayList<>();
+
+        private Bucket(int[] members) {
+            this.members = members;
+            leaves = Integer.highestOneBit(Math.max(1, members.length - 1)) << 1;
+            maxRange = new double[2 * leaves];
+            maxSeats = new int[2 * leaves];
+            maxCargo = new double[2 * leaves];
+            maxPotential = new double[2 * leaves];
+            Arrays.fill(maxRange, Double.NEGATIVE_INFINITY);
+            Arrays.fill(maxSeats, -1);
+            Arrays.fill(maxCargo, Double.NEGATIVE_INFINITY);
+            Arrays.fill(maxPotential, Double.NEGATIVE_INFINITY);
+            for (int i = 0; i < members.length; i++) {
+                set(i);
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                pull(node);
+            }
+            mostRange = maxRange.clone();
+            mostSeats = maxSeats.clone();
+            mostCargo = maxCargo.clone();
+        }
+
+        private void set(int position) {
+            int node = leaves + position;
+            int vehicle = members[position];
+            maxRange[node] = range[vehicle];
+            maxSeats[node] = seats[vehicle];
+            maxCargo[node] = cargo[vehicle];
+            maxPotential[node] = Double.NEGATIVE_INFINITY;
+        }
+
+        private void pull(int node) {
+            maxRange[node] = Math.max(maxRange[2 * node], maxRange[2 * node + 1]);
+            maxSeats[node] = Math.max(maxSeats[2 * node], maxSeats[2 * node + 1]);
+            maxCargo[node] = Math.max(maxCargo[2 * node], maxCargo[2 * node + 1]);
+            maxPotential[node] = Math.max(maxPotential[2 * node], maxPotential[2 * node + 1]);
+        }
+
+        private void pullUp(int position) {
+            for (int node = (leaves + position) >> 1; node > 0; node >>= 1) {
+                pull(node);
+            }
+        }
+
+        private void take(int position) {
+            int node = leaves + position;
+            maxRange[node] = Double.NEGATIVE_INFINITY;
+            maxSeats[node] = -1;
+            maxCargo[node] = Double.NEGATIVE_INFINITY;
+            pullUp(position);
+            taken.add(position);
+        }
+
+        private void restore() {
+            for (int position : taken) {
+                set(position);
+                pullUp(position);
+            }
+            taken.clear();
+        }
+
+        // The first position from the given one on whose vehicle can take the trip and is
+        // not taken, or -1
+        private int find(int from, Trip trip) {
+            while (from < members.length) {
+                int position = search(1, 0, leaves, from, trip);
+                if (position < 0 || hasFuelFor(members[position], trip.distance())) {
+                    return position;
+                }
+                from = position + 1;
+            }
+            return -1;
+        }
+
+        private int search(int node, int low, int high, int from, Trip trip) {
+            if (high <= from || !fits(node, trip)) {
+                return -1;
+            }
+            if (high - low == 1) {
+                return low;
+            }
+            int middle = (low + high) >>> 1;
+            int position = search(2 * node, low, middle, from, trip);
+            return position >= 0 ? position : search(2 * node + 1, middle, high, from, trip);
+        }
+
+        // Whether some vehicle under the node not taken could have the range, seats and
+        // capacity for the trip
+        private boolean fits(int node, Trip trip) {
+            return maxRange[node] >= trip.distance() && maxSeats[node] >= trip.passengers() && maxCargo[node] >= trip.cargo();
+        }
+
+        // The same, taken or not
+        private boolean couldFit(int node, Trip trip) {
+            return mostRange[node] >= trip.distance() && mostSeats[node] >= trip.passengers() && mostCargo[node] >= trip.cargo();
+        }
+
+        private boolean isTaken(int position) {
+            return maxPotential[leaves + position] != Double.NEGATIVE_INFINITY;
+        }
+
+        // Taken by a row of an optimal plan, whose potential starts at zero
+        private void match(int position) {
+            take(position);
+            setPotential(position, 0);
+        }
+
+        private void setPotential(int position, double potential) {
+            maxPotential[leaves + position] = potential;
+            pullUp(position);
+        }
+
+        // No taken vehicle under a node costs less, less its potential, as the first vehicle
+        // under the node costs the least. A vehicle not taken has no potential to take off.
+        private double bound(int node, double distance) {
+            if (node >= leaves && !isTaken(node - leaves)) {
+                return fuelFor(members[node - leaves], distance);
+            }
+            int shift = Integer.numberOfLeadingZeros(node) - Integer.numberOfLeadingZeros(leaves);
+            return fuelFor(members[(node << shift) - leaves], distance) - maxPotential[node];
+        }
+    }
+
+    // The vehicles that can take a trip, cheapest first, for a greedy plan. A bucket is only
+    // searched once its first vehicle could come next.
+    private final class Candidates {
+
+        private final Trip trip;
+        // The position of the next vehicle in each bucket searched so far, -1 past the last
+        private final int[] heads = new int[buckets.length];
+        private int searched;
+        // The bucket and position of the vehicle next() gave last
+        private int last;
+        private int lastPosition;
+
+        private Candidates(Trip trip) {
+            this.trip = trip;
+        }
+
+        // The next vehicle, or -1 if there are no more
+        private int next() {
+            while (true) {
+                int best = -1;
+                for (int b = 0; b < searched; b++) {
+                    if (heads[b] >= 0 && (best < 0 || compare(buckets[b].members[heads[b]], buckets[best].members[heads[best]]) < 0)) {
+                        best = b;
+                    }
+                }
+                if (searched < buckets.length && (best < 0 || rank[buckets[searched].members[0]] <= rank[buckets[best].members[heads[best]]])) {
+                    heads[searched] = buckets[searched].find(0, trip);
+                    searched++;
+                    continue;
+                }
+                if (best < 0) {
+                    return -1;
+                }
+                last = best;
+                lastPosition = heads[best];
+                heads[best] = buckets[best].find(lastPosition + 1, trip);
+                return buckets[best].members[lastPosition];
+            }
+        }
+
+        // Leaves the vehicle next() gave last out of the buckets until the planner is restored
+        private void take() {
+            buckets[last].take(lastPosition);
+        }
+    }
+
+    // The vehicles a trip of an optimal plan has not taken yet, by the least any of them
+    // could cost less its potential. Each bucket is gone through in order like the greedy
+    // candidates, stopping only at vehicles no trip has, as their potential is zero. The
+    // taken vehicles it passes wait in the heap as the few tree nodes that cover them, with
+    // the cost of their first vehicle less the highest potential taken under them as key.
+    // Potentials only go down, so a key stays low enough for the vehicles it was made for
+    // however old it is. A bucket is only added once its first vehicle could come next, as
+    // none of the buckets after it costs less.
+    private final class Frontier {
+
+        // The kinds of entry in the heap, which at the same key come in this order
+        private static final long FREE = 0;
+        private static final long BUCKET = 1L << 61;
+        private static final long TAKEN = 2L << 61;
+        private static final long KIND = 3L << 61;
+
+        private final Trip trip;
+        private int opened;
+        // The position each bucket is gone through to
+        private int[] heads = new int[4];
+        private int size;
+        private double[] keys = new double[8];
+        // The kind, then the bucket, then the tree node, which is 0 for the rest of a bucket
+        private long[] entries = new long[8];
+        // Counts toward the optimal plan's work
+        private long pushes;
+
+        private Frontier(Trip trip) {
+            this.trip = trip;
+        }
+
+        private boolean canBeTaken() {
+            for (var bucket : buckets) {
+                if (bucket.couldFit(1, trip)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // No vehicle left costs less, less its potential, infinite if none is left
+        private double least() {
+            double least = size > 0 ? keys[0] : Double.POSITIVE_INFINITY;
+            return opened < buckets.length ? Math.min(least, firstCost(opened)) : least;
+        }
+
+        private double firstCost(int bucket) {
+            return fuelFor(buckets[bucket].members[0], trip.distance());
+        }
+
+        private long entry(int bucket, int node) {
+            Bucket b = buckets[bucket];
+            boolean free = node >= b.leaves && !b.isTaken(node - b.leaves);
+            return (free ? FREE : TAKEN) | (long) bucket << 32 | node;
+        }
+
+        // The next vehicle that can take the trip, if it costs no more than limit less its
+        // potential, otherwise -1
+        private int next(double limit) {
+            while (true) {
+                while (opened < buckets.length && (size == 0 || firstCost(opened) <= keys[0])) {
+                    if (buckets[opened].couldFit(1, trip)) {
+                        if (opened >= heads.length) {
+                            heads = Arrays.copyOf(heads, Math.max(2 * heads.length, opened + 1));
+                        }
+                        push(firstCost(opened), BUCKET | (long) opened << 32);
+                    }
+                    opened++;
+                }
+                if (size == 0 || keys[0] > limit) {
+                    return -1;
+                }
+                double key = keys[0];
+                long entry = entries[0];
+                pop();
+                int b = (int) ((entry & ~KIND) >>> 32);
+                Bucket bucket = buckets[b];
+                int node = (int) entry;
+                if ((entry & KIND) == BUCKET) {
+                    int position = bucket.find(heads[b], trip);
+                    defer(b, 1, 0, bucket.leaves, heads[b], position >= 0 ? position : bucket.members.length);
+                    if (position >= 0) {
+                        heads[b] = position + 1;
+                        double cost = fuelFor(bucket.members[position], trip.distance());
+                        push(cost, entry(b, bucket.leaves + position));
+                        push(cost, entry);
+                    }
+                    continue;
+                }
+                double bound = bucket.bound(node, trip.distance());
+                long now = entry(b, node);
+                if (bound > key || now > entry) {
+                    push(bound, now);
+                }
+                else if (node >= bucket.leaves) {
+                    // A vehicle passed that no trip had then could not take this one
+                    int vehicle = bucket.members[node - bucket.leaves];
+                    if (bucket.couldFit(node, trip) && hasFuelFor(vehicle, trip.distance())) {
+                        return vehicle;
+                    }
+                }
+                else {
+                    for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                        if (bucket.couldFit(child, trip) && bucket.maxPotential[child] != Double.NEGATIVE_INFINITY) {
+                            push(bucket.bound(child, trip.distance()), entry(b, child));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Puts the nodes covering the positions from from up to to in the heap, where some
+        // vehicle under them is taken and could take the trip
+        private void defer(int b, int node, int low, int high, int from, int to) {
+            Bucket bucket = buckets[b];
+            if (high <= from || low >= to || !bucket.couldFit(node, trip) || bucket.maxPotential[node] == Double.NEGATIVE_INFINITY) {
+                return;
+            }
+            if (from <= low && high <= to) {
+                push(bucket.bound(node, trip.distance()), entry(b, node));
+                return;
+            }
+            int middle = (low + high) >>> 1;
+            defer(b, 2 * node, low, middle, from, to);
+            defer(b, 2 * node + 1, middle, high, from, to);
+        }
+
+        // Ties go by kind, bucket and node, so plans never depend on the order of the heap
+        private static boolean before(double key, long entry, double otherKey, long otherEntry) {
+            return key < otherKey || (key == otherKey && entry < otherEntry);
+        }
+
+        private void push(double key, long entry) {
+            pushes++;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                entries = Arrays.copyOf(entries, 2 * size);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (!before(key, entry, keys[parent], entries[parent])) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                entries[i] = entries[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            entries[i] = entry;
+        }
+
+        private void pop() {
+            double key = keys[--size];
+            long entry = entries[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(keys[child + 1], entries[child + 1], keys[child], entries[child])) {
+                    child++;
+                }
+                if (!before(keys[child], entries[child], key, entry)) {
+                    break;
+                }
+                keys[i] = keys[child];
+                entries[i] = entries[child];
+                i = child;
+            }
+            keys[i] = key;
+            entries[i] = entry;
+        }
+    }
+
+    // The optimal plan as an assignment problem, with trips as rows and vehicles as columns.
+    // A row's edges are the vehicles taken from its frontier so far, and the frontier stands
+    // in the searches for all the rest. Columns are only made for the vehicles that some row
+    // has taken.
+    private final class Assignment {
+
+        private final List<Trip> trips;
+        // Row r is trips.get(order[r])
+        private final int[] order;
+
+        private final Frontier[] frontiers;
+        // The frontier's least when the row was last put in the heap
+        private final double[] frontierLeast;
+        private final int[][] edgeColumns;
+        private final double[][] edgeCosts;
+        private final int[] edgeCount;
+        private final double[] rowPotential;
+        private final int[] rowColumn;
+        private final double[] rowDistance;
+
+        private final int[] columnOf;
+        // Each row's column for leaving it out, only made once some row has to be
+        private final int[] leftOutColumn;
+        private final double leftOutCost;
+        private boolean leavingOut;
+        private int columns;
+        private int[] columnVehicle = new int[16];
+        private int[] columnRow = new int[16];
+        // Never above zero, zero for columns no row has
+        private double[] columnPotential = new double[16];
+        private double[] columnDistance = new double[16];
+        private int[] columnFrom = new int[16];
+        // The search a column's distance was set in and the one it was settled in
+        private int[] columnReached = new int[16];
+        private int[] columnSettled = new int[16];
+        private int search;
+        // How far the searches have gone, and how many vehicles they hold on to
+        private long work;
+        private long held;
+        // The vehicles and trips, which the budgets go by
+        private final long scale;
+
+        // Holds columns, and -1 - r for the frontier of row r
+        private int heapSize;
+        private double[] heapDistance = new double[16];
+        private int[] heapEntry = new int[16];
+        private final List<Integer> settled = new ArrayList<>();
+        private final List<Integer> treeRows = new ArrayList<>();
+        // The free column the search has reached at the least distance so far
+        private int free;
+        private double shortest;
+
+        private Assignment(List<Trip> trips, int[] order) {
+            this.trips = trips;
+            this.order = order;
+            int n = order.length;
+            frontiers = new Frontier[n];
+            frontierLeast = new double[n];
+            edgeColumns = new int[n][];
+            edgeCosts = new double[n][];
+            edgeCount = new int[n];
+            rowPotential = new double[n];
+            rowColumn = new int[n];
+            rowDistance = new double[n];
+            Arrays.fill(rowColumn, -1);
+            columnOf = new int[vehicles.length];
+            Arrays.fill(columnOf, -1);
+            leftOutColumn = new int[n];
+            Arrays.fill(leftOutColumn, -1);
+            double mostFuel = 0;
+            for (var trip : trips) {
+                mostFuel += trip.distance() / lowestEfficiency;
+            }
+            leftOutCost = 1 + 2 * (Double.isFinite(mostFuel) ? mostFuel : 0);
+            scale = Math.max((long) vehicles.length + n, SMALLEST_SCALE);
+        }
+
+        private DispatchPlan solve() {
+            for (int r = 0; r < order.length; r++) {
+                Frontier frontier = new Frontier(trips.get(order[r]));
+                if (!frontier.canBeTaken()) {
+                    // No vehicle can take the trip
+                    continue;
+                }
+                frontiers[r] = frontier;
+                edgeColumns[r] = new int[4];
+                edgeCosts[r] = new double[4];
+                if (leavingOut) {
+                    addLeftOut(r);
+                }
+                if (!augment(r) && !overBudget()) {
+                    leaveOut(r);
+                    augment(r);
+                }
+                if (overBudget()) {
+                    break;
+                }
+            }
+            // The planner can be used again
+            for (var bucket : buckets) {
+                bucket.restore();
+            }
+            if (overBudget()) {
+                return null;
+            }
+            DispatchPlan plan = new DispatchPlan(trips, true);
+            for (int r = 0; r < order.length; r++) {
+                if (rowColumn[r] >= 0 && columnVehicle[rowColumn[r]] >= 0) {
+                    int vehicle = columnVehicle[rowColumn[r]];
+                    Trip trip = trips.get(order[r]);
+                    plan.assign(order[r], vehicles[vehicle], fuelFor(vehicle, trip.distance()));
+                }
+            }
+            return plan;
+        }
+
+        private boolean overBudget() {
+            return work > WORK_PER_ENTRY * scale || held > HELD_PER_ENTRY * scale;
+        }
+
+        private void addEdge(int r, int column, double cost) {
+            int count = edgeCount[r]++;
+            if (count == edgeColumns[r].length) {
+                edgeColumns[r] = Arrays.copyOf(edgeColumns[r], 2 * count);
+                edgeCosts[r] = Arrays.copyOf(edgeCosts[r], 2 * count);
+            }
+            edgeColumns[r][count] = column;
+            edgeCosts[r][count] = cost;
+        }
+
+        // No vehicle can be freed for the row whatever the others are given. From here on
+        // every row can be left out instead, at a cost above the fuel of any plan, so that the
+        // plan gives as many trips a vehicle as it can before it saves fuel. Rows taken before
+        // can be left out too, as leaving one of them out for this one may now be better.
+        private void leaveOut(int r) {
+            leavingOut = true;
+            for (int row = 0; row <= r; row++) {
+                if (frontiers[row] != null) {
+                    addLeftOut(row);
+                }
+            }
+        }
+
+        private void addLeftOut(int r) {
+            leftOutColumn[r] = newColumn(-1);
+            addEdge(r, leftOutColumn[r], leftOutCost);
+        }
+
+        private int column(int vehicle) {
+            if (columnOf[vehicle] < 0) {
+                columnOf[vehicle] = newColumn(vehicle);
+            }
+            return columnOf[vehicle];
+        }
+
+        // A column for the vehicle, or for leaving a row out if it is -1
+        private int newColumn(int vehicle) {
+            if (columns == columnVehicle.length) {
+                int capacity = 2 * columns;
+                columnVehicle = Arrays.copyOf(columnVehicle, capacity);
+                columnRow = Arrays.copyOf(columnRow, capacity);
+                columnPotential = Arrays.copyOf(columnPotential, capacity);
+                columnDistance = Arrays.copyOf(columnDistance, capacity);
+                columnFrom = Arrays.copyOf(columnFrom, capacity);
+                columnReached = Arrays.copyOf(columnReached, capacity);
+                columnSettled = Arrays.copyOf(columnSettled, capacity);
+            }
+            columnVehicle[columns] = vehicle;
+            columnRow[columns] = -1;
+            return columns++;
+        }
+
+        // Finds the cheapest way, by the reduced costs, to give the row a column, moving rows
+        // already given one along the way, and updates the potentials so that every reduced
+        // cost stays at zero or above. False if no column can be freed for the row.
+        private boolean augment(int start) {
+            search++;
+            heapSize = 0;
+            settled.clear();
+            treeRows.clear();
+            free = -1;
+            shortest = Double.POSITIVE_INFINITY;
+            reach(start, 0);
+            while (heapSize > 0) {
+                double distance = heapDistance[0];
+                int entry = heapEntry[0];
+                if (distance >= shortest) {
+                    break;
+                }
+                pop();
+                work++;
+                if (overBudget()) {
+                    return false;
+                }
+                if (entry < 0) {
+                    takeFromFrontier(-1 - entry);
+                    continue;
+                }
+                if (columnSettled[entry] == search || distance > columnDistance[entry]) {
+                    continue;
+                }
+                columnSettled[entry] = search;
+                settled.add(entry);
+                reach(columnRow[entry], distance);
+            }
+            if (free < 0) {
+                return false;
+            }
+            for (int row : treeRows) {
+                rowPotential[row] += shortest - rowDistance[row];
+            }
+            for (int column : settled) {
+                columnPotential[column] -= shortest - columnDistance[column];
+                int vehicle = columnVehicle[column];
+                if (vehicle >= 0) {
+                    buckets[bucketOf[vehicle]].setPotential(positionOf[vehicle], columnPotential[column]);
+                }
+            }
+            int vehicle = columnVehicle[free];
+            if (vehicle >= 0) {
+                buckets[bucketOf[vehicle]].match(positionOf[vehicle]);
+            }
+            for (int column = free; column >= 0; ) {
+                int row = columnFrom[column];
+                int previous = rowColumn[row];
+                columnRow[column] = row;
+                rowColumn[row] = column;
+                column = previous;
+            }
+            return true;
+        }
+
+        // The row's frontier came first in the heap, so its next vehicle becomes an edge if it
+        // is still as near as the frontier's key said or nearer than the rest of the heap.
+        // Otherwise the frontier goes back in with its key brought up to date.
+        private void takeFromFrontier(int row) {
+            double next = heapSize > 0 ? Math.min(heapDistance[0], shortest) : shortest;
+            double limit = Math.max(frontierLeast[row], next - rowDistance[row] + rowPotential[row]);
+            long pushes = frontiers[row].pushes;
+            int size = frontiers[row].size;
+            int vehicle = frontiers[row].next(limit);
+            work += frontiers[row].pushes - pushes;
+            held += frontiers[row].size - size + (vehicle >= 0 ? 1 : 0);
+            if (vehicle >= 0) {
+                int column = column(vehicle);
+                double cost = fuelFor(vehicle, trips.get(order[row]).distance());
+                addEdge(row, column, cost);
+                relax(row, column, cost);
+            }
+            pushFrontier(row);
+        }
+
+        private void reach(int row, double distance) {
+            rowDistance[row] = distance;
+            treeRows.add(row);
+            int[] edges = edgeColumns[row];
+            double[] costs = edgeCosts[row];
+            work += edgeCount[row];
+            for (int e = 0; e < edgeCount[row]; e++) {
+                relax(row, edges[e], costs[e]);
+            }
+            pushFrontier(row);
+        }
+
+        private void pushFrontier(int row) {
+            frontierLeast[row] = frontiers[row].least();
+            double distance = rowDistance[row] + frontierLeast[row] - rowPotential[row];
+            if (distance < shortest) {
+                push(distance, -1 - row);
+            }
+        }
+
+        private void relax(int row, int column, double cost) {
+            if (columnSettled[column] == search) {
+                return;
+            }
+            double reached = rowDistance[row] + cost - rowPotential[row] - columnPotential[column];
+            if (columnReached[column] != search || reached < columnDistance[column]) {
+                columnReached[column] = search;
+                columnDistance[column] = reached;
+                columnFrom[column] = row;
+                if (columnRow[column] < 0) {
+                    // No path goes on through a free column, so it is only a way to end
+                    if (reached < shortest) {
+                        free = column;
+                        shortest = reached;
+                    }
+                }
+                else {
+                    push(reached, column);
+                }
+            }
+        }
+
+        private void push(double distance, int entry) {
+            if (heapSize == heapDistance.length) {
+                heapDistance = Arrays.copyOf(heapDistance, 2 * heapSize);
+                heapEntry = Arrays.copyOf(heapEntry, 2 * heapSize);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (heapDistance[parent] <= distance) {
+                    break;
+                }
+                heapDistance[i] = heapDistance[parent];
+                heapEntry[i] = heapEntry[parent];
+                i = parent;
+            }
+            heapDistance[i] = distance;
+            heapEntry[i] = entry;
+        }
+
+        private void pop() {
+            double distance = heapDistance[--heapSize];
+            int entry = heapEntry[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && heapDistance[child + 1] < heapDistance[child]) {
+                    child++;
+                }
+                if (distance <= heapDistance[child]) {
+                    break;
+                }
+                heapDistance[i] = heapDistance[child];
+                heapEntry[i] = heapEntry[child];
+                i = child;
+            }
+            heapDistance[i] = distance;
+            heapEntry[i] = entry;
+        }
+    }
+}
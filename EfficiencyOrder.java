@@ -0,0 +1,175 @@
+import vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+// The vehicles of a fleet from most to least fuel efficient, kept in order as vehicles are
+// added, removed or change efficiency so that the fleet never has to be sorted from scratch.
+// Vehicles as efficient as each other stay in fleet order, which is what a stable sort of
+// the fleet gives. Fleet order is told by a sequence number handed out as each vehicle is
+// added, so the numbers are handed out again when the fleet is put in this order.
+//
+// Like FleetStatistics it hears about efficiency changes from the vehicles' own threads.
+// A change only marks the vehicle, without locking, so vehicles changing at the same time
+// do not wait on each other. The marked vehicles are moved when the order is next read,
+// and everything else locks.
+public class EfficiencyOrder {
+
+    private static final class Key {
+
+        final double efficiency;
+        // Only changed by sortFleet(), which keeps the tree's order as it is
+        long sequence;
+
+        Key(double efficiency, long sequence) {
+            this.efficiency = efficiency;
+            this.sequence = sequence;
+        }
+    }
+
+    // A vehicle in the order. The key is only used under the lock.
+    private static final class Entry {
+
+        final Vehicle vehicle;
+        Key key;
+        // Set while the entry is waiting in changed
+        final AtomicBoolean marked = new AtomicBoolean();
+
+        Entry(Vehicle vehicle) {
+            this.vehicle = vehicle;
+        }
+    }
+
+    private final TreeMap<Key, Vehicle> order;
+    private final ConcurrentHashMap<Vehicle, Entry> entries;
+    // Vehicles whose efficiency has changed since they were last put in the tree
+    private final ConcurrentLinkedQueue<Entry> changed;
+    private long nextSequence;
+
+    // Whether the order is the same as the fleet order, i.e. sequence numbers only go up along it
+    private boolean inFleetOrder;
+
+    public EfficiencyOrder() {
+        order = new TreeMap<>((a, b) -> {
+            int byEfficiency = Double.compare(b.efficiency, a.efficiency);
+            return byEfficiency != 0 ? byEfficiency : Long.compare(a.sequence, b.sequence);
+        });
+        entries = new ConcurrentHashMap<>();
+        changed = new ConcurrentLinkedQueue<>();
+        inFleetOrder = true;
+    }
+
+    // Vehicles must be added in fleet order
+    public synchronized void vehicleAdded(Vehicle v) {
+        Entry entry = new Entry(v);
+        entries.put(v, entry);
+        insert(entry, new Key(v.getFuelEfficiency(), nextSequence++));
+    }
+
+    public synchronized void vehicleRemoved(Vehicle v) {
+        Entry entry = entries.remove(v);
+        if (entry != null) {
+            order.remove(entry.key);
+        }
+    }
+
+    public void efficiencyChanged(Vehicle v) {
+        Entry entry = entries.get(v);
+        // A vehicle already marked is moved with its latest efficiency
+        if (entry != null && entry.marked.compareAndSet(false, true)) {
+            changed.add(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        order.clear();
+        entries.clear();
+        changed.clear();
+        nextSequence = 0;
+        inFleetOrder = true;
+    }
+
+    public synchronized boolean isInFleetOrder() {
+        update();
+        return inFleetOrder;
+    }
+
+    public synchronized List<Vehicle> getVehicles() {
+        update();
+        return new ArrayList<>(order.values());
+    }
+
+    // The first k vehicles in the order that pass filter
+    public synchronized List<Vehicle> getMostEfficient(int k, Predicate<Vehicle> filter) {
+        update();
+        List<Vehicle> result = new ArrayList<>();
+        for (var v : order.values()) {
+            if (result.size() >= k) {
+                break;
+            }
+            if (filter.test(v)) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    // Vehicles with an efficiency from min to max inclusive, most efficient first
+    public synchronized List<Vehicle> getRange(double min, double max) {
+        update();
+        if (Double.compare(min, max) > 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(order.subMap(new Key(max, Long.MIN_VALUE), true, new Key(min, Long.MAX_VALUE), true).values());
+    }
+
+    // Returns the vehicles in order for the fleet to be put in, and numbers them again to
+    // match. The new numbers go up along the order, so no key moves in the tree.
+    public synchronized List<Vehicle> sortFleet() {
+        update();
+        List<Vehicle> vehicles = new ArrayList<>(order.size());
+        nextSequence = 0;
+        for (var entry : order.entrySet()) {
+            entry.getKey().sequence = nextSequence++;
+            vehicles.add(entry.getValue());
+        }
+        inFleetOrder = true;
+        return vehicles;
+    }
+
+    // Moves the vehicles marked since the last read, holding the lock
+    private void update() {
+        Entry entry;
+        while ((entry = changed.poll()) != null) {
+            // Unmarked before the efficiency is read, so a change made after this is marked again
+            entry.marked.set(false);
+            // Removed from the order since it was marked
+            if (entries.get(entry.vehicle) != entry) {
+                continue;
+            }
+            double efficiency = entry.vehicle.getFuelEfficiency();
+            if (Double.compare(efficiency, entry.key.efficiency) != 0) {
+                order.remove(entry.key);
+                insert(entry, new Key(efficiency, entry.key.sequence));
+            }
+        }
+    }
+
+    private void insert(Entry entry, Key key) {
+        entry.key = key;
+        order.put(key, entry.vehicle);
+        if (inFleetOrder) {
+            // The rest of the order was in fleet order, so only the new neighbours can break it
+            Key lower = order.lowerKey(key);
+            Key higher = order.higherKey(key);
+            if ((lower != null && lower.sequence > key.sequence) || (higher != null && higher.sequence < key.sequence)) {
+                inFleetOrder = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// The events of a simulation in time order, so that a calendar of millions of events holds
+// no objects. An event is a time, the index of the vehicle it is for and a kind. Events at
+// the same time come out by vehicle index, then kind, so the order never depends on how a
+// fleet was split up.
+//
+// It is a heap with four children to a node, half as deep as a binary heap, and each event
+// is two longs next to each other: the time, as a long that sorts the same way, and the
+// vehicle and kind. A node's children then take two cache lines at most, which matters once
+// the calendar is much bigger than the cache. Sifting moves a hole instead of swapping.
+//
+// A simulation handles the first event and usually puts the vehicle's next one in its
+// place with replaceFirst(), which costs half of removing it and adding another.
+public class EventCalendar {
+
+    private static final int ARITY = 4;
+
+    // The time at 2 * i and the vehicle and kind at 2 * i + 1 for the event at node i
+    private long[] entries;
+    private int size;
+
+    public EventCalendar(int capacity) {
+        entries = new long[2 * Math.max(capacity, 16)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(double time, int vehicle, byte kind) {
+        if (vehicle < 0) {
+            throw new IllegalArgumentException("Vehicle index cannot be negative");
+        }
+        if (2 * size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * entries.length);
+        }
+        siftUp(size++, key(time), payload(vehicle, kind));
+    }
+
+    public double getFirstTime() {
+        checkNotEmpty();
+        return time(entries[0]);
+    }
+
+    public int getFirstVehicle() {
+        checkNotEmpty();
+        return (int) (entries[1] >>> 8);
+    }
+
+    public byte getFirstKind() {
+        checkNotEmpty();
+        return (byte) entries[1];
+    }
+
+    // Replaces the first event with one for the same vehicle, at a time no earlier than the
+    // first event's. Simulated time never goes back, so every next event meets that.
+    public void replaceFirst(double time, byte kind) {
+        checkNotEmpty();
+        long key = key(time);
+        if (key < entries[0]) {
+            throw new IllegalArgumentException("An event cannot be moved earlier than the first event");
+        }
+        siftDown(0, key, payload((int) (entries[1] >>> 8), kind));
+    }
+
+    public void removeFirst() {
+        checkNotEmpty();
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, entries[2 * last], entries[2 * last + 1]);
+        }
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException("The event calendar is empty");
+        }
+    }
+
+    // A long that sorts like the time: the sign bit is kept and the other bits of negative
+    // times are flipped. NaN, which a vehicle with no speed can give as a journey time,
+    // sorts after every other time, as with Double.compare().
+    private static long key(double time) {
+        long bits = Double.doubleToLongBits(time);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private static double time(long key) {
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    private static long payload(int vehicle, byte kind) {
+        return (long) vehicle << 8 | (kind & 0xFF);
+    }
+
+    // Moves the hole at i up until the event fits there, and puts it there
+    private void siftUp(int i, long key, long payload) {
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            long parentKey = entries[2 * parent];
+            long parentPayload = entries[2 * parent + 1];
+            if (parentKey < key || (parentKey == key && parentPayload <= payload)) {
+                break;
+            }
+            entries[2 * i] = parentKey;
+            entries[2 * i + 1] = parentPayload;
+            i = parent;
+        }
+        entries[2 * i] = key;
+        entries[2 * i + 1] = payload;
+    }
+
+    // Moves the hole at i down until the event fits there, and puts it there
+    private void siftDown(int i, long key, long payload) {
+        while (true) {
+            int first = ARITY * i + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + ARITY, size);
+            int least = first;
+            long leastKey = entries[2 * first];
+            long leastPayload = entries[2 * first + 1];
+            for (int child = first + 1; child < last; child++) {
+                long childKey = entries[2 * child];
+                long childPayload = entries[2 * child + 1];
+                if (childKey < leastKey || (childKey == leastKey && childPayload < leastPayload)) {
+                    least = child;
+                    leastKey = childKey;
+                    leastPayload = childPayload;
+                }
+            }
+            if (key < leastKey || (key == leastKey && payload <= leastPayload)) {
+                break;
+            }
+            entries[2 * i] = leastKey;
+            entries[2 * i + 1] = leastPayload;
+            i = least;
+        }
+        entries[2 * i] = key;
+        entries[2 * i + 1] = payload;
+    }
+}
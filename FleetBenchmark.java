@@ -0,0 +1,181 @@
+import exceptions.OverloadException;
+import vehicles.Vehicle;
+import vehicles.models.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Micro benchmarks for the FleetManager hot paths on synthetic fleets.
+//
+//   java FleetBenchmark [-c] [-t types] [-o operations] [-s seconds] [sizes...]
+//
+// types:      Car,Bus,Truck,Airplane,CargoShip,Mixed      (default all)
+// operations: add,load,write,journeys,fuel,report,sort    (default all)
+// sizes:      fleet sizes, e.g. 1000 100000 10000000      (default 1000 10000 100000 1000000)
+// -c:         use columnar fleets, see FleetManager(boolean)
+//
+// Fleets are generated outside the timed section, new for every add and sort and once per
+// measurement for the other operations. Each benchmark warms up for the given number of
+// seconds and is then measured for as long again (and at least three operations),
+// reporting operations per second, time per vehicle, and the bytes allocated per operation
+// by the benchmark thread. Output printed by the fleet while it is measured is thrown away.
+public class FleetBenchmark {
+
+    private static final List<String> TYPES = List.of("Car", "Bus", "Truck", "Airplane", "CargoShip", "Mixed");
+    private static final List<String> OPERATIONS = List.of("add", "load", "write", "journeys", "fuel", "report", "sort");
+    private static final int MIN_OPERATIONS = 3;
+    private static final String[] MODELS = {"Alpha", "Bravo", "Charlie", "Delta", "Echo", "Foxtrot", "Golf", "Hotel"};
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final PrintStream OUT = System.out;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private static boolean columnar;
+
+    // Results are added here so the JIT cannot drop the work that produced them
+    private static double sink;
+
+    public static void main(String[] args) throws Exception {
+        List<String> types = TYPES;
+        List<String> operations = OPERATIONS;
+        double seconds = 1;
+        List<Integer> sizes = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c" -> columnar = true;
+                case "-t" -> types = Arrays.asList(args[++i].split(","));
+                case "-o" -> operations = Arrays.asList(args[++i].split(","));
+                case "-s" -> seconds = Double.parseDouble(args[++i]);
+                default -> sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes = List.of(1_000, 10_000, 100_000, 1_000_000);
+        }
+
+        OUT.printf("%-10s %-10s %10s %14s %14s %16s%n", "operation", "type", "size", "ops/s", "ns/vehicle", "alloc B/op");
+        for (var operation : operations) {
+            for (var type : types) {
+                for (int size : sizes) {
+                    run(operation, type, size, seconds);
+                }
+            }
+        }
+        if (sink == 42) {
+            OUT.println();
+        }
+    }
+
+    private static void run(String operation, String type, int size, double seconds) throws Exception {
+        File csv = null;
+        if (operation.equals("load")) {
+            csv = File.createTempFile("fleet-benchmark", ".csv");
+            csv.deleteOnExit();
+            FleetManager fleet = fleetOf(generate(type, size));
+            System.setOut(DISCARD);
+            fleet.saveToFile(csv.getPath(), false);
+            System.setOut(OUT);
+        }
+
+        // Warm up, then measure for the same length of time
+        measure(operation, type, size, csv, seconds);
+        long[] result = measure(operation, type, size, csv, seconds);
+        long count = result[0];
+        long nanos = result[1];
+        long allocated = result[2];
+
+        OUT.printf("%-10s %-10s %10d %14.3f %14.2f %16d%n", operation, type, size,
+                count * 1e9 / nanos, (double) nanos / count / size, allocated / count);
+    }
+
+    // Returns the number of operations, the nanoseconds they took and the bytes they allocated
+    private static long[] measure(String operation, String type, int size, File csv, double seconds) throws Exception {
+        long budget = (long) (seconds * 1e9);
+        long count = 0;
+        long nanos = 0;
+        long allocated = 0;
+        // Setup, not timed. Adding needs vehicles that are in no fleet yet and sorting a sorted
+        // fleet is not the same work, so those get new vehicles every time. The other
+        // operations leave the fleet much as they found it and share one.
+        FleetManager shared = switch (operation) {
+            case "add", "load", "sort" -> null;
+            default -> fleetOf(generate(type, size));
+        };
+        do {
+            Vehicle[] vehicles = operation.equals("add") ? generate(type, size) : null;
+            FleetManager fleet = switch (operation) {
+                case "add", "load" -> new FleetManager(columnar);
+                case "sort" -> fleetOf(generate(type, size));
+                default -> shared;
+            };
+            File output = operation.equals("write") ? File.createTempFile("fleet-benchmark", ".csv") : null;
+
+            System.setOut(DISCARD);
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            switch (operation) {
+                case "add" -> {
+                    for (var v : vehicles) {
+                        fleet.addVehicle(v);
+                    }
+                }
+                case "load" -> fleet.loadFromFile(csv.getPath());
+                case "write" -> fleet.saveToFile(output.getPath(), false);
+                case "journeys" -> fleet.startAllJourneys(1.0);
+                case "fuel" -> sink += fleet.getTotalFuelConsumption(1.0);
+                case "report" -> sink += fleet.generateReport().length();
+                case "sort" -> fleet.sortFleetByEfficiency();
+                default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+            nanos += System.nanoTime() - start;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            System.setOut(OUT);
+
+            if (output != null) {
+                output.delete();
+            }
+            count++;
+        } while (nanos < budget || count < MIN_OPERATIONS);
+        return new long[] {count, nanos, allocated};
+    }
+
+    private static FleetManager fleetOf(Vehicle[] vehicles) throws Exception {
+        FleetManager fleet = new FleetManager(columnar);
+        for (var v : vehicles) {
+            fleet.addVehicle(v);
+        }
+        return fleet;
+    }
+
+    // The same seed always gives the same fleet. Mixed cycles through the five models.
+    private static Vehicle[] generate(String type, int size) throws OverloadException {
+        Random random = new Random(size);
+        Vehicle[] vehicles = new Vehicle[size];
+        for (int i = 0; i < size; i++) {
+            String vehicleType = type.equals("Mixed") ? TYPES.get(i % 5) : type;
+            vehicles[i] = generate(vehicleType, "V" + i, random);
+        }
+        return vehicles;
+    }
+
+    private static Vehicle generate(String type, String id, Random random) throws OverloadException {
+        String model = MODELS[random.nextInt(MODELS.length)];
+        double mileage = random.nextInt(2_000_000) / 100.0;
+        double fuel = 1_000 + random.nextInt(100_000) / 100.0;
+        return switch (type) {
+            case "Car" -> new Car(id, model, 120 + random.nextInt(80), mileage, random.nextInt(6), fuel);
+            case "Bus" -> new Bus(id, model, 80 + random.nextInt(40), mileage, random.nextInt(51), random.nextInt(50_000) / 100.0, fuel);
+            case "Truck" -> new Truck(id, model, 90 + random.nextInt(40), mileage, random.nextInt(500_000) / 100.0, fuel);
+            case "Airplane" -> new Airplane(id, model, 800 + random.nextInt(200), mileage, 10_000 + random.nextInt(3_000), random.nextInt(201), random.nextInt(1_000_000) / 100.0, fuel);
+            case "CargoShip" -> new CargoShip(id, model, 30 + random.nextInt(20), mileage, random.nextBoolean(), random.nextInt(5_000_000) / 100.0, fuel);
+            default -> throw new IllegalArgumentException("Unknown vehicle type: " + type);
+        };
+    }
+}
@@ -0,0 +1,86 @@
+import vehicles.Vehicle;
+
+// One command of a batch for FleetManager.execute(). Each acts on the vehicle with the given
+// ID, apart from add, which carries the vehicle to add.
+public class FleetCommand {
+
+    public enum Type {
+        ADD,
+        REMOVE,
+        MOVE,
+        REFUEL,
+        LOAD_CARGO,
+        UNLOAD_CARGO,
+        BOARD_PASSENGERS,
+        DISEMBARK_PASSENGERS
+    }
+
+    private final Type type;
+    private final String id;
+    // Distance, fuel, weight or passenger count, depending on the type
+    private final double amount;
+    private final Vehicle vehicle;
+
+    private FleetCommand(Type type, String id, double amount, Vehicle vehicle) {
+        this.type = type;
+        this.id = id;
+        this.amount = amount;
+        this.vehicle = vehicle;
+    }
+
+    public static FleetCommand add(Vehicle v) {
+        return new FleetCommand(Type.ADD, v.getId(), 0, v);
+    }
+
+    public static FleetCommand remove(String id) {
+        return new FleetCommand(Type.REMOVE, id, 0, null);
+    }
+
+    public static FleetCommand move(String id, double distance) {
+        return new FleetCommand(Type.MOVE, id, distance, null);
+    }
+
+    public static FleetCommand refuel(String id, double amount) {
+        return new FleetCommand(Type.REFUEL, id, amount, null);
+    }
+
+    public static FleetCommand loadCargo(String id, double weight) {
+        return new FleetCommand(Type.LOAD_CARGO, id, weight, null);
+    }
+
+    public static FleetCommand unloadCargo(String id, double weight) {
+        return new FleetCommand(Type.UNLOAD_CARGO, id, weight, null);
+    }
+
+    public static FleetCommand boardPassengers(String id, int count) {
+        return new FleetCommand(Type.BOARD_PASSENGERS, id, count, null);
+    }
+
+    public static FleetCommand disembarkPassengers(String id, int count) {
+        return new FleetCommand(Type.DISEMBARK_PASSENGERS, id, count, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public int getCount() {
+        return (int) amount;
+    }
+
+    public Vehicle getVehicle() {
+        return vehicle;
+    }
+
+    public boolean changesFleet() {
+        return type == Type.ADD || type == Type.REMOVE;
+    }
+}
@@ -0,0 +1,470 @@
+import exceptions.OverloadException;
+import vehicles.Vehicle;
+import vehicles.models.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+// Reads the fleet CSV format one line at a time into a reused char buffer.
+// Fields are located by offset instead of being split into Strings, and each
+// numeric field is parsed exactly once, straight from the buffer.
+public class FleetCsvReader implements Closeable {
+
+    private static final int MAX_FIELDS = 16;
+
+    // Powers of ten that are exact as doubles, used by the fast number parser
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader reader;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private boolean endOfInput;
+
+    // The current line is buffer[lineStart, lineEnd)
+    private int lineStart;
+    private int lineEnd;
+    private int lineNumber;
+
+    // Field i of the line being parsed is chars[fieldStart[i], fieldEnd[i])
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private int fieldCount;
+    private char[] chars;
+
+    // Set when a number could not be parsed, since parseDouble has no spare return value
+    private boolean badNumber;
+
+    private String error;
+
+    public FleetCsvReader(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[8192];
+    }
+
+    // Moves to the next line, splitting on \n, \r or \r\n like BufferedReader.readLine()
+    public boolean nextLine() throws IOException {
+        while (true) {
+            if (skipLineFeed && position < limit) {
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+            }
+            for (int i = position; i < limit; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    lineStart = position;
+                    lineEnd = i;
+                    position = i + 1;
+                    skipLineFeed = c == '\r';
+                    lineNumber++;
+                    return true;
+                }
+            }
+            if (endOfInput) {
+                if (position < limit) {
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    lineNumber++;
+                    return true;
+                }
+                return false;
+            }
+            fill();
+        }
+    }
+
+    // Keeps the unread part of the buffer and reads more after it, growing for very long lines
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            char[] bigger = new char[buffer.length * 2];
+            System.arraycopy(buffer, position, bigger, 0, remaining);
+            buffer = bigger;
+        }
+        else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        }
+        else {
+            limit += read;
+        }
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public Vehicle parseVehicle() {
+        return parse(buffer, lineStart, lineEnd, lineNumber);
+    }
+
+    // Describes why the last parse returned null
+    public String getError() {
+        return error;
+    }
+
+    // Parses one line of the fleet CSV held in chars[from, to). Returns null and sets
+    // the error message if the line does not describe a valid vehicle.
+    public Vehicle parse(char[] chars, int from, int to, int lineNumber) {
+        this.chars = chars;
+        this.error = null;
+
+        if (!split(from, to)) {
+            error = "Incorrect Format for CSV at line: " + lineNumber;
+            return null;
+        }
+        if (fieldCount < 1 || fieldStart[0] == fieldEnd[0]) {
+            error = "No Vehicle type provided at line: " + lineNumber;
+            return null;
+        }
+        if (fieldCount < 2 || fieldStart[1] == fieldEnd[1]) {
+            error = "No ID provided at line: " + lineNumber;
+            return null;
+        }
+
+        try {
+            //Car,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,FuelLevel
+            if (typeIs("Car")) {
+                if (fieldCount < 8) {
+                    return incorrectFormat(lineNumber);
+                }
+                double maxSpeed = parseDouble(3);
+                double currentMileage = parseDouble(4);
+                int passengerCapacity = parseInt(5);
+                int currentPassengers = parseInt(6);
+                double fuelLevel = parseDouble(7);
+                if (badNumber) {
+                    return incorrectFormat(lineNumber);
+                }
+                if (passengerCapacity != 5) {
+                    return defaultsChanged(lineNumber);
+                }
+                return new Car(field(1), field(2), maxSpeed, currentMileage, currentPassengers, fuelLevel);
+            }
+            //Bus,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
+            if (typeIs("Bus")) {
+                if (fieldCount < 10) {
+                    return incorrectFormat(lineNumber);
+                }
+                double maxSpeed = parseDouble(3);
+                double currentMileage = parseDouble(4);
+                int passengerCapacity = parseInt(5);
+                int currentPassengers = parseInt(6);
+                double cargoCapacity = parseDouble(7);
+                double currentCargo = parseDouble(8);
+                double fuelLevel = parseDouble(9);
+                if (badNumber) {
+                    return incorrectFormat(lineNumber);
+                }
+                if (passengerCapacity != 50 || cargoCapacity != 500) {
+                    return defaultsChanged(lineNumber);
+                }
+                return new Bus(field(1), field(2), maxSpeed, currentMileage, currentPassengers, currentCargo, fuelLevel);
+            }
+            //Truck,ID,Model,MaxSpeed,CurrentMileage,CargoCapacity,CurrentCargo,FuelLevel
+            if (typeIs("Truck")) {
+                if (fieldCount < 8) {
+                    return incorrectFormat(lineNumber);
+                }
+                double maxSpeed = parseDouble(3);
+                double currentMileage = parseDouble(4);
+                double cargoCapacity = parseDouble(5);
+                double currentCargo = parseDouble(6);
+                double fuelLevel = parseDouble(7);
+                if (badNumber) {
+                    return incorrectFormat(lineNumber);
+                }
+                if (cargoCapacity != 5000) {
+                    return defaultsChanged(lineNumber);
+                }
+                return new Truck(field(1), field(2), maxSpeed, currentMileage, currentCargo, fuelLevel);
+            }
+            //Airplane,ID,Model,MaxSpeed,CurrentMileage,MaxAltitude,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
+            if (typeIs("Airplane")) {
+                if (fieldCount < 11) {
+                    return incorrectFormat(lineNumber);
+                }
+                double maxSpeed = parseDouble(3);
+                double currentMileage = parseDouble(4);
+                double maxAltitude = parseDouble(5);
+                int passengerCapacity = parseInt(6);
+                int currentPassengers = parseInt(7);
+                double cargoCapacity = parseDouble(8);
+                double currentCargo = parseDouble(9);
+                double fuelLevel = parseDouble(10);
+                if (badNumber) {
+                    return incorrectFormat(lineNumber);
+                }
+                if (passengerCapacity != 200 || cargoCapacity != 10000) {
+                    return defaultsChanged(lineNumber);
+                }
+                return new Airplane(field(1), field(2), maxSpeed, currentMileage, maxAltitude, currentPassengers, currentCargo, fuelLevel);
+            }
+            if (typeIs("CargoShip")) {
+                return parseCargoShip(lineNumber);
+            }
+        }
+        catch (OverloadException e) {
+            error = e.getMessage();
+            return null;
+        }
+
+        error = "Vehicle Type not found at line: " + lineNumber;
+        return null;
+    }
+
+    private Vehicle parseCargoShip(int lineNumber) {
+        //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo
+        //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo,FuelLevel
+        if (fieldCount < 6) {
+            return incorrectFormat(lineNumber);
+        }
+        boolean hasSail;
+        if (fieldIs(5, "true")) {
+            hasSail = true;
+        }
+        else if (fieldIs(5, "false")) {
+            hasSail = false;
+        }
+        else {
+            return incorrectFormat(lineNumber);
+        }
+        if (hasSail ? fieldCount != 8 : fieldCount < 9) {
+            return incorrectFormat(lineNumber);
+        }
+
+        double maxSpeed = parseDouble(3);
+        double currentMileage = parseDouble(4);
+        double cargoCapacity = parseDouble(6);
+        double currentCargo = parseDouble(7);
+        double fuelLevel = hasSail ? 0 : parseDouble(8);
+        if (badNumber) {
+            return incorrectFormat(lineNumber);
+        }
+        if (cargoCapacity != 50000) {
+            return defaultsChanged(lineNumber);
+        }
+        try {
+            if (hasSail) {
+                return new CargoShip(field(1), field(2), maxSpeed, currentMileage, true, currentCargo);
+            }
+            return new CargoShip(field(1), field(2), maxSpeed, currentMileage, false, currentCargo, fuelLevel);
+        }
+        catch (OverloadException e) {
+            error = hasSail ? e.getMessage() : e.getMessage() + " at line: " + lineNumber;
+            return null;
+        }
+    }
+
+    private Vehicle incorrectFormat(int lineNumber) {
+        error = "Incorrect Format for CSV at line: " + lineNumber;
+        return null;
+    }
+
+    private Vehicle defaultsChanged(int lineNumber) {
+        error = "Defaults were changed at line: " + lineNumber;
+        return null;
+    }
+
+    // Finds the comma separated fields of chars[from, to). Trailing empty fields are
+    // dropped, matching String.split(","). Returns false if the line has no comma.
+    // Only the first MAX_FIELDS offsets are kept, which covers every field the formats use.
+    private boolean split(int from, int to) {
+        fieldCount = 0;
+        badNumber = false;
+        boolean hasComma = false;
+        int field = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || chars[i] == ',') {
+                if (i < to) {
+                    hasComma = true;
+                }
+                if (field < MAX_FIELDS) {
+                    fieldStart[field] = start;
+                    fieldEnd[field] = i;
+                }
+                field++;
+                if (i > start) {
+                    fieldCount = field;
+                }
+                start = i + 1;
+            }
+        }
+        return hasComma;
+    }
+
+    private String field(int index) {
+        return new String(chars, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+    }
+
+    // Compares the trimmed type field with a vehicle class name
+    private boolean typeIs(String type) {
+        int start = fieldStart[0];
+        int end = fieldEnd[0];
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        if (end - start != type.length()) {
+            return false;
+        }
+        for (int i = 0; i < type.length(); i++) {
+            if (chars[start + i] != type.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fieldIs(int index, String value) {
+        int start = fieldStart[index];
+        if (fieldEnd[index] - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.toLowerCase(chars[start + i]) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int parseInt(int index) {
+        int start = fieldStart[index];
+        int end = fieldEnd[index];
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (chars[start] == '-' || chars[start] == '+')) {
+            negative = chars[start] == '-';
+            start++;
+        }
+        if (start == end || end - start > 9) {
+            badNumber = true;
+            return 0;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                badNumber = true;
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    // Parses plain decimals such as 1500.00 or -2.5e3 directly. With at most 15 digits the
+    // mantissa is exact as a double, and with an exact power of ten one multiply or divide
+    // gives the correctly rounded result. Anything else goes through Double.parseDouble.
+    private double parseDouble(int index) {
+        int start = fieldStart[index];
+        int end = fieldEnd[index];
+        while (start < end && chars[start] <= ' ') {
+            start++;
+        }
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (digitCount == 15) {
+                    return parseDoubleSlow(start, end);
+                }
+                digits = digits * 10 + (c - '0');
+                digitCount++;
+                if (fraction) {
+                    scale--;
+                }
+            }
+            else if (c == '.' && !fraction) {
+                fraction = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (digitCount == 0) {
+            return parseDoubleSlow(start, end);
+        }
+        if (i < end) {
+            if (chars[i] != 'e' && chars[i] != 'E') {
+                return parseDoubleSlow(start, end);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return parseDoubleSlow(start, end);
+            }
+            int exponent = 0;
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9') {
+                    return parseDoubleSlow(start, end);
+                }
+                exponent = exponent * 10 + (c - '0');
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if (scale < -22 || scale > 22) {
+            return parseDoubleSlow(start, end);
+        }
+
+        double value = digits;
+        value = scale < 0 ? value / POWERS_OF_TEN[-scale] : value * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(int start, int end) {
+        try {
+            return Double.parseDouble(new String(chars, start, end - start));
+        }
+        catch (NumberFormatException e) {
+            badNumber = true;
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,248 @@
+import vehicles.Vehicle;
+import vehicles.models.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// Writes the fleet CSV format without going through Formatter. Fields are appended to a
+// reused char buffer, which is encoded into a direct byte buffer and written to a file
+// channel when full. The output is byte for byte what PrintWriter.printf would write.
+public class FleetCsvWriter implements Closeable {
+
+    private static final int CHAR_BUFFER_SIZE = 32 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder;
+    private final char[] chars;
+    private final CharBuffer charView;
+    private final ByteBuffer bytes;
+    private int length;
+
+    // printf formats with the default locale, so follow its decimal separator. If the
+    // locale does not use ASCII digits, every number goes through String.format instead.
+    private final Locale locale;
+    private final char decimalSeparator;
+    private final boolean asciiDigits;
+    private final String lineSeparator;
+
+    public FleetCsvWriter(String filename) throws IOException {
+        channel = FileChannel.open(Path.of(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = new char[CHAR_BUFFER_SIZE];
+        charView = CharBuffer.wrap(chars);
+        bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+
+        locale = Locale.getDefault(Locale.Category.FORMAT);
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        decimalSeparator = symbols.getDecimalSeparator();
+        asciiDigits = symbols.getZeroDigit() == '0';
+        lineSeparator = System.lineSeparator();
+    }
+
+    public void writeVehicle(Vehicle v) throws IOException {
+        // Land Vehicles
+        if (v instanceof Car x) {
+            //Car,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,FuelLevel
+            writeCommon(x);
+            appendInt(x.getPassengerCapacity()).append(',');
+            appendInt(x.getCurrentPassengers()).append(',');
+            appendFixed2(x.getFuelLevel()).endLine();
+        }
+        else if (v instanceof Bus x) {
+            //Bus,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
+            writeCommon(x);
+            appendInt(x.getPassengerCapacity()).append(',');
+            appendInt(x.getCurrentPassengers()).append(',');
+            appendFixed2(x.getCargoCapacity()).append(',');
+            appendFixed2(x.getCurrentCargo()).append(',');
+            appendFixed2(x.getFuelLevel()).endLine();
+        }
+        else if (v instanceof Truck x) {
+            //Truck,ID,Model,MaxSpeed,CurrentMileage,CargoCapacity,CurrentCargo,FuelLevel
+            writeCommon(x);
+            appendFixed2(x.getCargoCapacity()).append(',');
+            appendFixed2(x.getCurrentCargo()).append(',');
+            appendFixed2(x.getFuelLevel()).endLine();
+        }
+        // Air Vehicles
+        else if (v instanceof Airplane x) {
+            //Airplane,ID,Model,MaxSpeed,CurrentMileage,MaxAltitude,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
+            writeCommon(x);
+            appendFixed2(x.getMaxAltitude()).append(',');
+            appendInt(x.getPassengerCapacity()).append(',');
+            appendInt(x.getCurrentPassengers()).append(',');
+            appendFixed2(x.getCargoCapacity()).append(',');
+            appendFixed2(x.getCurrentCargo()).append(',');
+            appendFixed2(x.getFuelLevel()).endLine();
+        }
+        // Water Vehicles
+        else if (v instanceof CargoShip x) {
+            if (!x.getHasSail()) {
+                //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo,FuelLevel
+                writeCommon(x);
+                append(x.getHasSail() ? "TRUE" : "FALSE").append(',');
+                appendFixed2(x.getCargoCapacity()).append(',');
+                appendFixed2(x.getCurrentCargo()).append(',');
+                appendFixed2(x.getFuelLevel()).endLine();
+            }
+            //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo
+            writeCommon(x);
+            append(x.getHasSail() ? "TRUE" : "FALSE").append(',');
+            appendFixed2(x.getCargoCapacity()).append(',');
+            appendFixed2(x.getCurrentCargo()).endLine();
+        }
+    }
+
+    //Type,ID,Model,MaxSpeed,CurrentMileage,
+    private void writeCommon(Vehicle v) throws IOException {
+        append(v.getClass().getSimpleName()).append(',');
+        append(v.getId()).append(',');
+        append(v.getModel()).append(',');
+        appendFixed2(v.getMaxSpeed()).append(',');
+        appendFixed2(v.getCurrentMileage()).append(',');
+    }
+
+    private FleetCsvWriter append(char c) throws IOException {
+        if (length == chars.length) {
+            flushChars();
+        }
+        chars[length++] = c;
+        return this;
+    }
+
+    private FleetCsvWriter append(String s) throws IOException {
+        int offset = 0;
+        while (offset < s.length()) {
+            if (length == chars.length) {
+                flushChars();
+            }
+            int count = Math.min(s.length() - offset, chars.length - length);
+            s.getChars(offset, offset + count, chars, length);
+            length += count;
+            offset += count;
+        }
+        return this;
+    }
+
+    private void endLine() throws IOException {
+        append(lineSeparator);
+    }
+
+    // Same as %d
+    private FleetCsvWriter appendInt(int value) throws IOException {
+        if (!asciiDigits) {
+            return append(String.format(locale, "%d", value));
+        }
+        return appendLong(value);
+    }
+
+    private FleetCsvWriter appendLong(long value) throws IOException {
+        if (value < 0) {
+            append('-');
+            if (value == Long.MIN_VALUE) {
+                return append("9223372036854775808");
+            }
+            value = -value;
+        }
+        if (length + 20 > chars.length) {
+            flushChars();
+        }
+        int end = length + digitCount(value);
+        int i = end;
+        do {
+            chars[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        length = end;
+        return this;
+    }
+
+    // Same as %.2f. When the value is exactly some integer number of hundredths as far as
+    // a double can tell, Formatter's half-up rounding can only give those hundredths, so
+    // they are written directly. Other values are left to String.format.
+    private FleetCsvWriter appendFixed2(double value) throws IOException {
+        if (asciiDigits && Math.abs(value) < 1e13) {
+            long hundredths = Math.round(value * 100);
+            if (hundredths / 100.0 == value) {
+                if (hundredths == 0 && Double.doubleToRawLongBits(value) < 0) {
+                    append('-');
+                }
+                if (hundredths < 0) {
+                    append('-');
+                    hundredths = -hundredths;
+                }
+                appendLong(hundredths / 100).append(decimalSeparator);
+                long fraction = hundredths % 100;
+                return append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+            }
+        }
+        return append(String.format(locale, "%.2f", value));
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void flushChars() throws IOException {
+        charView.limit(length).position(0);
+        while (true) {
+            CoderResult result = encoder.encode(charView, bytes, false);
+            if (result.isOverflow()) {
+                drainBytes();
+            }
+            else {
+                break;
+            }
+        }
+        // Keep any half of a surrogate pair the encoder left behind
+        int remaining = charView.remaining();
+        System.arraycopy(chars, charView.position(), chars, 0, remaining);
+        length = remaining;
+        charView.clear();
+    }
+
+    private void drainBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushChars();
+            charView.limit(length).position(0);
+            while (encoder.encode(charView, bytes, true).isOverflow()) {
+                drainBytes();
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                drainBytes();
+            }
+            drainBytes();
+        }
+        finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import vehicles.Vehicle;
+import vehicles.VehicleOperation;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+// Append-only log of the changes made to a fleet since its last snapshot. A changed vehicle
+// is logged as its whole state after the change, not as the operation and its arguments.
+// Replaying a record therefore never runs an operation again, and replaying the same record
+// twice is harmless, which lets FleetManager.checkpoint() take its snapshot while vehicles
+// keep changing: anything the snapshot misses is also in the journal that follows it.
+//
+// Layout (big endian, as written by DataOutputStream):
+//   int magic, int version, then records up to the end of the file
+//   ADD:    byte 1, UTF id, UTF model, vehicle fields (see FleetSnapshot)
+//   REMOVE: byte 2, UTF id
+//   CLEAR:  byte 3
+//   CHANGE: byte 4, byte operation, UTF id, vehicle fields
+// Version 1 journals hold vehicle fields as written by version 1 snapshots, and are still replayed.
+//
+// Every record is flushed to the file as it is written, so it survives the program
+// crashing but not the machine. A record cut short by a crash ends the replay.
+public class FleetJournal implements Closeable {
+
+    private static final int MAGIC = 0x464C544A; // "FLTJ"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte CHANGE = 4;
+
+    private static final VehicleOperation[] OPERATIONS = VehicleOperation.values();
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final Path path;
+    private final Path oldPath;
+    private DataOutputStream out;
+    private long recordCount;
+
+    // Starts a new, empty journal, replacing any journal already in the file
+    public FleetJournal(String filename) throws IOException {
+        path = Path.of(filename);
+        oldPath = Path.of(filename + ".old");
+        out = open(path);
+        Files.deleteIfExists(oldPath);
+    }
+
+    public synchronized void vehicleAdded(Vehicle v) throws IOException {
+        out.writeByte(ADD);
+        out.writeUTF(v.getId());
+        out.writeUTF(v.getModel());
+        FleetSnapshot.writeFields(out, v);
+        endRecord();
+    }
+
+    public synchronized void vehicleRemoved(Vehicle v) throws IOException {
+        out.writeByte(REMOVE);
+        out.writeUTF(v.getId());
+        endRecord();
+    }
+
+    public synchronized void fleetCleared() throws IOException {
+        out.writeByte(CLEAR);
+        endRecord();
+    }
+
+    // Called from the vehicle's observer while the vehicle is locked, so its state is consistent
+    public synchronized void vehicleChanged(Vehicle v, VehicleOperation operation) throws IOException {
+        out.writeByte(CHANGE);
+        out.writeByte(operation.ordinal());
+        out.writeUTF(v.getId());
+        FleetSnapshot.writeFields(out, v);
+        endRecord();
+    }
+
+    // Records written since the journal was started or last rotated
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    // Moves the records written so far to <filename>.old and carries on in an empty journal.
+    // The old records are only needed until the next snapshot is safely written, after which
+    // discardOld() deletes them. If an earlier checkpoint failed to get that far, the old
+    // file is still there and the current records are added to the end of it.
+    public synchronized void rotate() throws IOException {
+        out.close();
+        if (Files.exists(oldPath)) {
+            try (InputStream in = Files.newInputStream(path);
+                 OutputStream old = Files.newOutputStream(oldPath, StandardOpenOption.APPEND)) {
+                in.skipNBytes(HEADER_SIZE);
+                in.transferTo(old);
+            }
+        }
+        else {
+            Files.move(path, oldPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        out = open(path);
+        recordCount = 0;
+    }
+
+    public void discardOld() throws IOException {
+        Files.deleteIfExists(oldPath);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // Whether there is anything to replay for filename
+    public static boolean exists(String filename) {
+        return Files.exists(Path.of(filename)) || Files.exists(Path.of(filename + ".old"));
+    }
+
+    // Applies the journal in filename, and the old journal left by an unfinished checkpoint,
+    // to vehicles keyed by ID. Returns the number of records applied.
+    public static int replay(String filename, Map<String, Vehicle> vehicles) throws IOException {
+        return replayFile(Path.of(filename + ".old"), vehicles) + replayFile(Path.of(filename), vehicles);
+    }
+
+    private static int replayFile(Path file, Map<String, Vehicle> vehicles) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a fleet journal: " + file);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported fleet journal version: " + version);
+            }
+            boolean withSchedule = version >= 2;
+
+            int type;
+            while ((type = in.read()) != -1) {
+                switch (type) {
+                    case ADD -> {
+                        String id = in.readUTF();
+                        String model = in.readUTF();
+                        vehicles.put(id, FleetSnapshot.readFields(in, id, model, withSchedule));
+                    }
+                    case REMOVE -> vehicles.remove(in.readUTF());
+                    case CLEAR -> vehicles.clear();
+                    case CHANGE -> {
+                        int operation = in.readUnsignedByte();
+                        if (operation >= OPERATIONS.length) {
+                            throw new IOException("Corrupt fleet journal: " + file);
+                        }
+                        String id = in.readUTF();
+                        Vehicle current = vehicles.get(id);
+                        Vehicle changed = FleetSnapshot.readFields(in, id, current == null ? "" : current.getModel(), withSchedule);
+                        if (current != null) {
+                            vehicles.put(id, changed);
+                        }
+                    }
+                    default -> throw new IOException("Corrupt fleet journal: " + file);
+                }
+                count++;
+            }
+        }
+        catch (EOFException e) {
+            // The last record was only partly written
+        }
+        return count;
+    }
+
+    private void endRecord() throws IOException {
+        out.flush();
+        recordCount++;
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+        return out;
+    }
+}
@@ -1,146 +1,429 @@
-import exceptions.InsufficientFuelException;
+import events.EventType;
+import events.Events;
 import exceptions.InvalidOperationException;
-import exceptions.OverloadException;
+import vehicles.FleetColumns;
+import vehicles.OperationStatus;
 import vehicles.Vehicle;
+import vehicles.VehicleOperation;
+import vehicles.VehicleState;
+import vehicles.interfaces.CargoCarrier;
 import vehicles.interfaces.FuelConsumable;
 import vehicles.interfaces.Maintainable;
+import vehicles.interfaces.PassengerCarrier;
+import vehicles.interfaces.VehicleObserver;
 import vehicles.models.*;
 import vehicles.types.AirVehicle;
 import vehicles.types.LandVehicle;
 import vehicles.types.WaterVehicle;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class FleetManager {
-    
-    private ArrayList<Vehicle> fleet;
+
+    // Types that searchByType and the bulk operations answer from an index
+    private static final List<Class<?>> INDEXED_TYPES = List.of(
+            Car.class, Bus.class, Truck.class, Airplane.class, CargoShip.class,
+            LandVehicle.class, AirVehicle.class, WaterVehicle.class,
+            FuelConsumable.class, PassengerCarrier.class, CargoCarrier.class, Maintainable.class);
+
+    // Journal records written before a checkpoint is taken automatically
+    private static final long DEFAULT_COMPACTION_THRESHOLD = 100_000;
+
+    // Vehicles keyed by ID. LinkedHashMap keeps insertion order for iteration
+    // while giving O(1) add, remove and lookup by ID.
+    private LinkedHashMap<String, Vehicle> fleet;
+
+    // Vehicles of each indexed type, in the same order as the fleet
+    private HashMap<Class<?>, LinkedHashSet<Vehicle>> typeIndex;
+
+    // Report totals kept up to date as vehicles are added, removed or changed
+    private FleetStatistics statistics;
+
+    // The vehicles sorted by efficiency, mileage and fuel level, kept up to date the same
+    // way, for the queries. Passes that change every vehicle's mileage or fuel level
+    // invalidate those indexes rather than update them one vehicle at a time.
+    private EfficiencyOrder efficiencyOrder;
+    private OrderedIndex mileageIndex;
+    private OrderedIndex fuelIndex;
+
+    // The maintainable vehicles by the distance left before they pass their maintenance
+    // threshold. Below zero they need maintenance now. The passes do not invalidate it:
+    // the vehicles they move mark themselves in it, and are moved in the tree by the next query.
+    private OrderedIndex maintenanceIndex;
+
+    // Set as the observer of every vehicle in the fleet
+    private FleetObserver observer;
+
+    // Holds the vehicles' changing numbers in arrays when the fleet is columnar, otherwise null
+    private FleetColumns columns;
+
+    // Write-ahead journal of fleet changes, only set between openJournal() and closeJournal().
+    // Checkpoints write the fleet to journalSnapshotFile and start the journal again.
+    private volatile FleetJournal journal;
+    private String journalSnapshotFile;
+    private long compactionThreshold;
+    private Object checkpointLock;
+
+    // Guards the fleet map and type index. Adding, removing, sorting and loading take the
+    // write lock, lookups and bulk passes take the read lock only long enough to copy what
+    // they need. Changes to a single vehicle are guarded by that vehicle's own monitor,
+    // so threads working on different vehicles never wait for each other.
+    private ReentrantReadWriteLock fleetLock;
 
     public FleetManager() {
-        fleet = new ArrayList<>();
+        this(false);
+    }
+
+    // A columnar fleet keeps its vehicles' state in a FleetColumns, which makes the
+    // fleet-wide fuel passes loops over arrays
+    public FleetManager(boolean columnar) {
+        fleetLock = new ReentrantReadWriteLock();
+        fleet = new LinkedHashMap<>();
+        statistics = new FleetStatistics();
+        efficiencyOrder = new EfficiencyOrder();
+        mileageIndex = new OrderedIndex(Vehicle::getCurrentMileage);
+        fuelIndex = new OrderedIndex(v -> ((FuelConsumable) v).getFuelLevel());
+        maintenanceIndex = new OrderedIndex(v -> ((Maintainable) v).getMaintenanceThreshold() - v.getCurrentMileage());
+        observer = new FleetObserver();
+        compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        checkpointLock = new Object();
+        if (columnar) {
+            columns = new FleetColumns();
+        }
+        typeIndex = new HashMap<>();
+        for (var type : INDEXED_TYPES) {
+            typeIndex.put(type, new LinkedHashSet<>());
+        }
     }
     
     public void addVehicle(Vehicle v) throws InvalidOperationException {
-        for (var i : fleet) {
-            if (i.getId().equals(v.getId())) {
+        fleetLock.writeLock().lock();
+        try {
+            if (fleet.containsKey(v.getId())) {
                 throw new InvalidOperationException("The vehicle with same ID already exists");
             }
+            if (columns != null && FleetColumns.isAttached(v)) {
+                throw new InvalidOperationException("The vehicle already belongs to a columnar fleet");
+            }
+            putVehicle(v);
+            writeJournal(j -> j.vehicleAdded(v));
+        }
+        finally {
+            fleetLock.writeLock().unlock();
         }
-        fleet.add(v);
+        compactJournalIfNeeded();
     }
 
     public void removeVehicle(String id) throws InvalidOperationException {
-        boolean found = false;
-        Vehicle removed = null;
-        for (var i : fleet) {
-            if (i.getId().equals(id)) {
-                found = true;
-                removed = i;
+        fleetLock.writeLock().lock();
+        try {
+            Vehicle removed = fleet.remove(id);
+            if (removed == null) {
+                throw new InvalidOperationException("Vehicle ID not found.");
             }
+            unindexVehicle(removed);
+            writeJournal(j -> j.vehicleRemoved(removed));
         }
-        if (found) {
-            fleet.remove(removed);
+        finally {
+            fleetLock.writeLock().unlock();
         }
-        else {
-            throw new InvalidOperationException("Vehicle ID not found.");
+        compactJournalIfNeeded();
+    }
+
+    public Vehicle getVehicle(String id) {
+        fleetLock.readLock().lock();
+        try {
+            return fleet.get(id);
+        }
+        finally {
+            fleetLock.readLock().unlock();
         }
     }
 
+    public int size() {
+        return statistics.getTotalCount();
+    }
+
     public void startAllJourneys(double distance) {
-        for (var v : fleet) {
-            try {
-                v.move(distance);
+        mileageIndex.invalidate();
+        fuelIndex.invalidate();
+        for (var v : snapshot(fleet.values())) {
+            OperationStatus status = v.tryMove(distance);
+            if (status != OperationStatus.OK) {
+                Events.emit(EventType.OPERATION_FAILED, v.getId(), v.getMoveFailure(status));
+            }
+        }
+        Events.emit(EventType.JOURNEYS_FINISHED, "");
+        compactJournalIfNeeded();
+    }
+
+    public JourneyResult startAllJourneysParallel(double distance) {
+        return startAllJourneysParallel(distance, ForkJoinPool.commonPool());
+    }
+
+    // Each move only touches its own vehicle, so the fleet can be split across the pool.
+    // Failures are collected instead of printed, in the same order as the fleet.
+    public JourneyResult startAllJourneysParallel(double distance, ForkJoinPool pool) {
+        mileageIndex.invalidate();
+        fuelIndex.invalidate();
+        Vehicle[] vehicles = snapshot(fleet.values());
+        String[] failures = new String[vehicles.length];
+
+        pool.invoke(new JourneyTask(vehicles, failures, distance, 0, vehicles.length));
+
+        JourneyResult result = new JourneyResult();
+        for (int i = 0; i < vehicles.length; i++) {
+            if (failures[i] == null) {
+                result.addCompleted();
             }
-            catch (InvalidOperationException e) {
-                System.out.println(e.getMessage());
+            else {
+                result.addFailure(vehicles[i].getId(), failures[i]);
             }
         }
-        System.out.println();
+        compactJournalIfNeeded();
+        return result;
+    }
+
+    // Runs each vehicle's trip plan for the given number of hours, see FleetSimulation.
+    // Vehicles for which plans returns null stay where they are.
+    public SimulationResult simulate(Function<Vehicle, TripPlan> plans, double hours) {
+        mileageIndex.invalidate();
+        fuelIndex.invalidate();
+        SimulationResult result = newSimulations(plans, 1)[0].run(hours);
+        compactJournalIfNeeded();
+        return result;
+    }
+
+    public SimulationResult simulateParallel(Function<Vehicle, TripPlan> plans, double hours) {
+        return simulateParallel(plans, hours, ForkJoinPool.commonPool());
+    }
+
+    // Vehicles never meet, so the fleet is split into one group for each thread of the
+    // pool, each with an event calendar of its own. Every vehicle ends up as it would with
+    // simulate().
+    public SimulationResult simulateParallel(Function<Vehicle, TripPlan> plans, double hours, ForkJoinPool pool) {
+        mileageIndex.invalidate();
+        fuelIndex.invalidate();
+        List<ForkJoinTask<SimulationResult>> tasks = new ArrayList<>();
+        for (var simulation : newSimulations(plans, pool.getParallelism())) {
+            tasks.add(pool.submit(() -> simulation.run(hours)));
+        }
+        // Each group lists its stranded vehicles in fleet order, and the groups are added in
+        // fleet order too
+        SimulationResult result = new SimulationResult();
+        for (var task : tasks) {
+            result.add(task.join());
+        }
+        compactJournalIfNeeded();
+        return result;
+    }
+
+    // Gives each trip a vehicle that can take it, at most one trip to a vehicle, for the
+    // least fuel, see DispatchPlanner. Nothing is done to the vehicles.
+    public DispatchPlan planDispatch(List<Trip> trips) {
+        return planDispatch(trips, false);
+    }
+
+    // A greedy plan gives the longest trips the cheapest vehicle left first. An optimal plan
+    // takes longer, and uses the least fuel of all the plans that give as many trips a vehicle.
+    // If too many trips want the same vehicles for that to finish, the greedy plan comes back,
+    // with isOptimal() false.
+    public DispatchPlan planDispatch(List<Trip> trips, boolean optimal) {
+        DispatchPlanner planner = new DispatchPlanner(snapshot(fleet.values()));
+        return optimal ? planner.planOptimal(trips) : planner.planGreedy(trips);
+    }
+
+    // Puts the consignments, given by weight, on as few cargo carriers as it can, see
+    // CargoPacker. Nothing is loaded until the plan is applied.
+    public LoadPlan planLoading(double[] consignments) {
+        return planLoading(consignments, ForkJoinPool.commonPool());
+    }
+
+    public LoadPlan planLoading(double[] consignments, ForkJoinPool pool) {
+        return new CargoPacker(snapshot(fleet.values())).pack(consignments, pool);
+    }
+
+    // Loads each vehicle of the plan with all its consignments as one atomic batch, so if a
+    // vehicle has been removed since the plan was made, or cannot take its load, none is loaded
+    public BatchResult applyLoadPlan(LoadPlan plan) {
+        return execute(plan.toCommands(), true);
     }
 
     public void refuelAll(double amount) {
-        for (var v : fleet) {
-            if (v instanceof FuelConsumable x) {
-                try {
-                    x.refuel(amount);
-                }
-                catch (InvalidOperationException e) {
-                    System.out.println(e.getMessage());
-                    return;
-                }
+        fuelIndex.invalidate();
+        // Amounts the vehicles would reject go the long way round for the same message
+        if (columns != null && amount > 0) {
+            fleetLock.readLock().lock();
+            try {
+                columns.refuel(amount, journal != null);
             }
+            finally {
+                fleetLock.readLock().unlock();
+            }
+            Events.emit(EventType.FLEET_REFUELED, "All vehicles refueled successfully");
+            compactJournalIfNeeded();
+            return;
         }
-        System.out.println("All vehicles refueled successfully");
+        for (var v : snapshot(typeIndex.get(FuelConsumable.class))) {
+            OperationStatus status = ((FuelConsumable) v).tryRefuel(amount);
+            if (status != OperationStatus.OK) {
+                Events.emit(EventType.OPERATION_FAILED, status.getMessage());
+                return;
+            }
+        }
+        Events.emit(EventType.FLEET_REFUELED, "All vehicles refueled successfully");
+        compactJournalIfNeeded();
     }
 
     public double getTotalFuelConsumption(double distance) {
+        fuelIndex.invalidate();
         double sum = 0;
-        for (var v : fleet) {
-            if (v instanceof FuelConsumable x) {
-                try {
-                    double consumedFuel = x.consumeFuel(distance);
-                    sum += consumedFuel;
-                }
-                catch (InsufficientFuelException e) {
-                    System.out.println(e.getMessage() + " for vehicle ID: " + v.getId());
-                }
+        if (columns != null) {
+            fleetLock.readLock().lock();
+            try {
+                // Vehicles only report each operation for the journal, without it the pass can leave them alone
+                sum = columns.consumeFuel(distance, v -> Events.emit(EventType.OPERATION_FAILED, v.getId(), "Not enough fuel for vehicle ID: " + v.getId()), journal != null);
             }
+            finally {
+                fleetLock.readLock().unlock();
+            }
+            compactJournalIfNeeded();
+            return Math.round(sum * 100.0) / 100.0;
         }
+        for (var v : snapshot(typeIndex.get(FuelConsumable.class))) {
+            double consumedFuel = ((FuelConsumable) v).tryConsumeFuel(distance);
+            if (Double.isNaN(consumedFuel)) {
+                Events.emit(EventType.OPERATION_FAILED, v.getId(), OperationStatus.INSUFFICIENT_FUEL.getMessage() + " for vehicle ID: " + v.getId());
+            }
+            else {
+                sum += consumedFuel;
+            }
+        }
+        compactJournalIfNeeded();
         return Math.round(sum * 100.0) / 100.0;
     }
 
+    // Only visits the vehicles that need maintenance, in fleet order
     public void maintainAll() {
-        for (var v : fleet) {
-            if (v instanceof Maintainable x) {
-                x.scheduleMaintenance();
-                x.performMaintenance();
-            }
+        for (var v : statistics.getVehiclesNeedingMaintenance()) {
+            Maintainable x = (Maintainable) v;
+            x.scheduleMaintenance();
+            x.performMaintenance();
         }
+        compactJournalIfNeeded();
     }
 
     public List<Vehicle> searchByType(Class<?> type) {
-        List<Vehicle> returnedList = new ArrayList<>();
+        fleetLock.readLock().lock();
+        try {
+            LinkedHashSet<Vehicle> indexed = typeIndex.get(type);
+            if (indexed != null) {
+                return new ArrayList<>(indexed);
+            }
+            if (type == Vehicle.class) {
+                return new ArrayList<>(fleet.values());
+            }
 
-        for (var v : fleet) {
-            if (type.isInstance(v)) {
-                returnedList.add(v);
+            // Not an indexed type, fall back to checking every vehicle
+            List<Vehicle> returnedList = new ArrayList<>();
+
+            for (var v : fleet.values()) {
+                if (type.isInstance(v)) {
+                    returnedList.add(v);
+                }
             }
+            return returnedList;
+        }
+        finally {
+            fleetLock.readLock().unlock();
         }
-        return returnedList;
     }
 
+    // Puts the fleet in the order kept by efficiencyOrder, the same order a stable sort from
+    // most to least efficient would give
     public void sortFleetByEfficiency() {
-        fleet.sort(Collections.reverseOrder());
+        fleetLock.writeLock().lock();
+        try {
+            if (efficiencyOrder.isInFleetOrder()) {
+                return;
+            }
+            List<Vehicle> sorted = efficiencyOrder.sortFleet();
+            // Only the order changes, so the vehicles keep their observer, the totals stay as
+            // they are and nothing is journaled. The statistics only renumber the vehicles,
+            // so the report follows the new order.
+            fleet.clear();
+            for (var indexed : typeIndex.values()) {
+                indexed.clear();
+            }
+            for (var v : sorted) {
+                fleet.put(v.getId(), v);
+                addToTypeIndex(v);
+            }
+            statistics.fleetReordered(sorted);
+            if (columns != null) {
+                columns.reorder(sorted);
+            }
+        }
+        finally {
+            fleetLock.writeLock().unlock();
+        }
     }
 
-    public String generateReport() {
-        int totalCount = 0;
-        int landVehicles = 0;
-        int airVehicles = 0;
-        int waterVehicles = 0;
-        double totalMileage = 0;
-        double totalEfficiency = 0;
+    // The vehicles from most to least efficient, without changing the fleet order
+    public List<Vehicle> getVehiclesByEfficiency() {
+        return efficiencyOrder.getVehicles();
+    }
 
-        for (var i : fleet) {
-            totalCount ++;
-            totalMileage += i.getCurrentMileage();
-            totalEfficiency += i.calculateFuelEfficiency();
+    // Query Methods
+    // Answered from the indexes, without changing the fleet order. The top-K queries give
+    // the first k vehicles that pass filter, highest first, and walk down the index until
+    // they have them, so a filter few vehicles pass can mean walking most of it.
+    public List<Vehicle> getMostEfficient(int k, Predicate<Vehicle> filter) {
+        return efficiencyOrder.getMostEfficient(k, filter);
+    }
 
-            switch (i) {
-                case LandVehicle landVehicle -> landVehicles++;
-                case AirVehicle airVehicle -> airVehicles++;
-                case WaterVehicle waterVehicle -> waterVehicles++;
-                default -> {}
-            }
-        }
+    public List<Vehicle> getHighestMileage(int k, Predicate<Vehicle> filter) {
+        return mileageIndex.getHighest(k, filter);
+    }
+
+    public List<Vehicle> getMostFuel(int k, Predicate<Vehicle> filter) {
+        return fuelIndex.getHighest(k, filter);
+    }
 
-        StringBuilder result = new StringBuilder(String.format("Total count of vehicles: %d%nNumber of Land Vehicles: %d%nNumber of Air Vehicles: %d%nNumber of Water Vehicles: %d%nAverage Efficiency: %.2f%nTotal Mileage: %.2f%n", totalCount, landVehicles, airVehicles, waterVehicles, (totalEfficiency / totalCount), totalMileage));
+    // The range queries give the vehicles with a value from min to max inclusive, highest first
+    public List<Vehicle> getByEfficiency(double min, double max) {
+        return efficiencyOrder.getRange(min, max);
+    }
 
-        List<Vehicle> needsMaintenance = getVehiclesNeedingMaintenance();
+    public List<Vehicle> getByMileage(double min, double max) {
+        return mileageIndex.getRange(min, max);
+    }
+
+    public List<Vehicle> getByFuelLevel(double min, double max) {
+        return fuelIndex.getRange(min, max);
+    }
 
-        for (var i : needsMaintenance) {
+    public String generateReport() {
+        StringBuilder result = new StringBuilder(String.format("Total count of vehicles: %d%nNumber of Land Vehicles: %d%nNumber of Air Vehicles: %d%nNumber of Water Vehicles: %d%nAverage Efficiency: %.2f%nTotal Mileage: %.2f%n", statistics.getTotalCount(), statistics.getLandVehicles(), statistics.getAirVehicles(), statistics.getWaterVehicles(), statistics.getAverageEfficiency(), statistics.getTotalMileage()));
+
+        for (var i : statistics.getVehiclesNeedingMaintenance()) {
             result.append(String.format("Vehicle ID %s needs maintenance.%n", i.getId()));
         }
 
@@ -148,21 +431,71 @@ public class FleetManager {
     }
 
     public List<Vehicle> getVehiclesNeedingMaintenance() {
-        List<Vehicle> result = new ArrayList<>();
+        return statistics.getVehiclesNeedingMaintenance();
+    }
+
+    // The vehicles past their maintenance threshold, most overdue first
+    public List<Vehicle> getVehiclesDueForMaintenance() {
+        // The smallest negative distance, as needsMaintenance() is mileage strictly above the threshold
+        return getVehiclesDueForMaintenanceWithin(-Double.MIN_VALUE);
+    }
 
-        for (var i : fleet) {
-            if (i instanceof Maintainable x) {
-                if (x.needsMaintenance()) {
-                    result.add(i);
+    // The vehicles that will be past their maintenance threshold within the given distance,
+    // including those already past it, most overdue first
+    public List<Vehicle> getVehiclesDueForMaintenanceWithin(double distance) {
+        List<Vehicle> due = maintenanceIndex.getRange(Double.NEGATIVE_INFINITY, distance);
+        // The index puts the most distance left first
+        Collections.reverse(due);
+        return due;
+    }
+
+    // Batch Methods
+    public BatchResult execute(List<FleetCommand> commands) {
+        return execute(commands, false);
+    }
+
+    // Runs the commands in order in one pass and reports how each went instead of throwing.
+    // The fleet lock is taken once for the whole batch, the write lock if the batch adds or
+    // removes vehicles and otherwise the read lock, so lookups by ID don't lock one by one.
+    //
+    // An atomic batch stops at the first command that fails and undoes the ones before it,
+    // newest first, so that either all of them are applied or none is. The fleet lock does
+    // not keep other threads away from the batch's vehicles, so each command is undone by
+    // taking back the change it made, keeping the changes other threads made meanwhile. If
+    // those leave no room for it, e.g. the cargo it loaded has since been unloaded, the
+    // command stays applied and is reported as a rollback conflict.
+    public BatchResult execute(List<FleetCommand> commands, boolean atomic) {
+        BatchResult result = new BatchResult(commands.size());
+        boolean changesFleet = false;
+        for (var c : commands) {
+            changesFleet |= c.changesFleet();
+        }
+        Lock lock = changesFleet ? fleetLock.writeLock() : fleetLock.readLock();
+        lock.lock();
+        try {
+            if (atomic) {
+                executeAtomically(commands, result);
+            }
+            else {
+                for (int i = 0; i < commands.size(); i++) {
+                    executeCommand(commands.get(i), i, result);
                 }
             }
         }
-
+        finally {
+            lock.unlock();
+        }
+        compactJournalIfNeeded();
         return result;
     }
 
     // Persistence Methods
     public void saveToFile(String filename) {
+        saveToFile(filename, true);
+    }
+
+    // Sorting by efficiency is optional so that large saves can skip the full sort
+    public void saveToFile(String filename, boolean sortByEfficiency) {
         File file = new File(filename);
         boolean fileExists = file.exists();
 
@@ -170,306 +503,618 @@ public class FleetManager {
         if (!fileExists) {
             try {
                 file.createNewFile();
-                System.out.println("Created file: " + filename);
+                Events.emit(EventType.FLEET_SAVED, "Created file: " + filename);
             } catch (IOException e) {
-                System.out.println("Unable to create the file.");
+                Events.emit(EventType.IO_ERROR, "Unable to create the file.");
                 return;
             }
-            writeToFile(filename);
-            System.out.println("Successfully added fleet to file: " + filename);
+            writeToFile(filename, sortByEfficiency);
+            Events.emit(EventType.FLEET_SAVED, "Successfully added fleet to file: " + filename);
         }
         else {
-            writeToFile(filename);
-            System.out.println("Successfully added fleet to file: " + filename);
+            writeToFile(filename, sortByEfficiency);
+            Events.emit(EventType.FLEET_SAVED, "Successfully added fleet to file: " + filename);
         }
     }
 
     public void loadFromFile(String filename) {
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(filename))) {
-            fleet.clear();
-            String line;
-            int lineNumber = 1;
+        fleetLock.writeLock().lock();
+        try (FleetCsvReader csvReader = new FleetCsvReader(new FileReader(filename))) {
+            clearFleet();
             ArrayList<Integer> errorLines = new ArrayList<>();
 
-            while ((line = bufferedReader.readLine()) != null) {
-                Vehicle vehicle = createVehicle(line, lineNumber);
+            while (csvReader.nextLine()) {
+                int lineNumber = csvReader.getLineNumber();
+                Vehicle vehicle = csvReader.parseVehicle();
                 if (vehicle != null) {
                     try {
                         addVehicle(vehicle);
                     } catch (InvalidOperationException e) {
-                        System.out.println(e.getMessage() + " before line: " + lineNumber);
+                        Events.emit(EventType.INVALID_RECORD, e.getMessage() + " before line: " + lineNumber);
                         errorLines.add(lineNumber);
                     }
                 }
                 else {
+                    Events.emit(EventType.INVALID_RECORD, csvReader.getError());
                     errorLines.add(lineNumber);
                 }
-                lineNumber++;
-            }
-            System.out.println("Fleet loaded successfully from: " + filename);
-            if (errorLines.size() == 1) {
-                System.out.println("Unable to create Vehicle from line: ");
-                System.out.println(errorLines.getFirst());
-            }
-            else if (errorLines.size() > 1) {
-                System.out.println("Unable to create Vehicles from lines: ");
-                for (int i = 0; i < errorLines.size(); i++) {
-                    if (i == errorLines.size() - 1) {
-                        System.out.printf("%d%n", errorLines.get(i));
+            }
+            Events.emit(EventType.FLEET_LOADED, "Fleet loaded successfully from: " + filename);
+            reportErrorLines(errorLines);
+        }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to load fleet from file: " + filename);
+        }
+        finally {
+            fleetLock.writeLock().unlock();
+        }
+        compactJournalIfNeeded();
+    }
+
+    public void loadFromFileParallel(String filename) {
+        loadFromFileParallel(filename, ForkJoinPool.commonPool());
+    }
+
+    // Parses newline aligned chunks of a memory mapped file on the pool, then adds the
+    // vehicles in file order so duplicate IDs and bad lines are reported as in loadFromFile
+    public void loadFromFileParallel(String filename, ForkJoinPool pool) {
+        List<ParallelCsvLoader.Chunk> chunks;
+        try {
+            chunks = ParallelCsvLoader.parse(filename, pool);
+        }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to load fleet from file: " + filename);
+            return;
+        }
+
+        fleetLock.writeLock().lock();
+        try {
+            clearFleet();
+            ArrayList<Integer> errorLines = new ArrayList<>();
+
+            for (var chunk : chunks) {
+                for (int i = 0; i < chunk.getLineCount(); i++) {
+                    int lineNumber = chunk.getFirstLine() + i;
+                    Vehicle vehicle = chunk.getVehicle(i);
+                    if (vehicle != null) {
+                        try {
+                            addVehicle(vehicle);
+                        } catch (InvalidOperationException e) {
+                            Events.emit(EventType.INVALID_RECORD, e.getMessage() + " before line: " + lineNumber);
+                            errorLines.add(lineNumber);
+                        }
                     }
                     else {
-                        System.out.printf("%d, ", errorLines.get(i));
+                        Events.emit(EventType.INVALID_RECORD, chunk.getError(i));
+                        errorLines.add(lineNumber);
                     }
                 }
             }
+            Events.emit(EventType.FLEET_LOADED, "Fleet loaded successfully from: " + filename);
+            reportErrorLines(errorLines);
+        }
+        finally {
+            fleetLock.writeLock().unlock();
+        }
+        compactJournalIfNeeded();
+    }
 
+    // Binary snapshot persistence, see FleetSnapshot for the format
+    public void saveSnapshot(String filename) {
+        try {
+            FleetSnapshot.write(snapshot(fleet.values()), filename);
+            Events.emit(EventType.FLEET_SAVED, "Successfully saved fleet snapshot to file: " + filename);
         }
         catch (IOException e) {
-            System.out.println("Unable to load fleet from file: " + filename);
+            Events.emit(EventType.IO_ERROR, "Unable to write fleet snapshot to file: " + filename);
         }
     }
 
-    // Helper Function for writing to a file
-    private void writeToFile(String filename) {
-        sortFleetByEfficiency();
-        try (PrintWriter writer = new PrintWriter(filename)) {
-            for (var v : fleet) {
-                // Land Vehicles
-                if (v instanceof Car x) {
-                    //Car,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,FuelLevel
-                    writer.printf("%s,%s,%s,%.2f,%.2f,%d,%d,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getPassengerCapacity(), x.getCurrentPassengers(), x.getFuelLevel());
+    // The whole snapshot is read before the fleet is replaced, so a damaged file leaves it unchanged
+    public void loadSnapshot(String filename) {
+        List<Vehicle> vehicles;
+        try {
+            vehicles = FleetSnapshot.read(filename);
+        }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to load fleet snapshot from file: " + filename);
+            return;
+        }
+
+        fleetLock.writeLock().lock();
+        try {
+            clearFleet();
+            for (var v : vehicles) {
+                try {
+                    addVehicle(v);
                 }
-                else if (v instanceof Bus x) {
-                    //Bus,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
-                    writer.printf("%s,%s,%s,%.2f,%.2f,%d,%d,%.2f,%.2f,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getPassengerCapacity(), x.getCurrentPassengers(), x.getCargoCapacity(), x.getCurrentCargo(), x.getFuelLevel());
+                catch (InvalidOperationException e) {
+                    Events.emit(EventType.INVALID_RECORD, v.getId(), e.getMessage() + ": " + v.getId());
                 }
-                else if (v instanceof Truck x) {
-                    //Truck,ID,Model,MaxSpeed,CurrentMileage,CargoCapacity,CurrentCargo,FuelLevel
-                    writer.printf("%s,%s,%s,%.2f,%.2f,%.2f,%.2f,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getCargoCapacity(), x.getCurrentCargo(), x.getFuelLevel());
+            }
+            Events.emit(EventType.FLEET_LOADED, "Fleet loaded successfully from snapshot: " + filename);
+        }
+        finally {
+            fleetLock.writeLock().unlock();
+        }
+        compactJournalIfNeeded();
+    }
+
+    // Journal Methods
+    // Startup path for a journaled fleet. If the snapshot or journal files exist, the fleet
+    // is replaced by the snapshot with the journal replayed over it. Otherwise the current
+    // fleet is kept. Either way a fresh snapshot is written and an empty journal started.
+    public void openJournal(String snapshotFile, String journalFile) {
+        closeJournal();
+
+        LinkedHashMap<String, Vehicle> recovered = null;
+        int replayed = 0;
+        try {
+            if (Files.exists(Path.of(snapshotFile))) {
+                recovered = new LinkedHashMap<>();
+                for (var v : FleetSnapshot.read(snapshotFile)) {
+                    recovered.put(v.getId(), v);
                 }
-                // Air Vehicles
-                else if (v instanceof Airplane x) {
-                    //Airplane,ID,Model,MaxSpeed,CurrentMileage,MaxAltitude,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
-                    writer.printf("%s,%s,%s,%.2f,%.2f,%.2f,%d,%d,%.2f,%.2f,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getMaxAltitude(), x.getPassengerCapacity(), x.getCurrentPassengers(), x.getCargoCapacity(), x.getCurrentCargo(), x.getFuelLevel());
+            }
+            if (FleetJournal.exists(journalFile)) {
+                if (recovered == null) {
+                    recovered = new LinkedHashMap<>();
                 }
-                // Water Vehicles
-                else if (v instanceof CargoShip x) {
-                    if (!x.getHasSail()) {
-                        //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo,FuelLevel
-                        writer.printf("%s,%s,%s,%.2f,%.2f,%B,%.2f,%.2f,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getHasSail(), x.getCargoCapacity(), x.getCurrentCargo(), x.getFuelLevel());
-                    }
-                    //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo
-                    writer.printf("%s,%s,%s,%.2f,%.2f,%B,%.2f,%.2f%n", x.getClass().getSimpleName(), x.getId(), x.getModel(), x.getMaxSpeed(), x.getCurrentMileage(), x.getHasSail(), x.getCargoCapacity(), x.getCurrentCargo());
+                replayed = FleetJournal.replay(journalFile, recovered);
+            }
+        }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to recover fleet from journal: " + journalFile);
+            return;
+        }
+
+        fleetLock.writeLock().lock();
+        try {
+            if (recovered != null) {
+                clearFleet();
+                for (var v : recovered.values()) {
+                    putVehicle(v);
                 }
             }
+            writeSnapshotFile(snapshotFile);
+            journal = new FleetJournal(journalFile);
+            journalSnapshotFile = snapshotFile;
         }
         catch (IOException e) {
-            System.out.println("Unable to write to the file: " + filename);
+            Events.emit(EventType.IO_ERROR, "Unable to open fleet journal: " + journalFile);
+            return;
+        }
+        finally {
+            fleetLock.writeLock().unlock();
         }
+
+        if (recovered != null) {
+            Events.emit(EventType.JOURNAL_OPENED, "Fleet recovered from snapshot: " + snapshotFile + " and " + replayed + " journal records");
+        }
+        Events.emit(EventType.JOURNAL_OPENED, "Journaling fleet changes to file: " + journalFile);
+    }
+
+    public void closeJournal() {
+        synchronized (checkpointLock) {
+            FleetJournal j = journal;
+            if (j == null) {
+                return;
+            }
+            journal = null;
+            try {
+                j.close();
+            }
+            catch (IOException e) {
+                Events.emit(EventType.IO_ERROR, "Unable to close fleet journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Writes a new snapshot and empties the journal. The journal is rotated before the
+    // snapshot is taken, so a change made meanwhile is in the new journal as well and
+    // replaying it over the snapshot is harmless.
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            FleetJournal j = journal;
+            if (j == null) {
+                return;
+            }
+            try {
+                j.rotate();
+                writeSnapshotFile(journalSnapshotFile);
+                j.discardOld();
+            }
+            catch (IOException e) {
+                Events.emit(EventType.IO_ERROR, "Unable to checkpoint fleet journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Number of journal records after which the next fleet operation takes a checkpoint
+    public void setCompactionThreshold(long records) {
+        compactionThreshold = records;
     }
 
-    // Helper Function to parse lines from csv
-    private static Vehicle createVehicle(String line, int lineNumber) {
-        if (!line.contains(",")) {
-            System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-            return null;
+    static void reportErrorLines(List<Integer> errorLines) {
+        if (errorLines.size() == 1) {
+            Events.emit(EventType.INVALID_RECORD, "Unable to create Vehicle from line: " + System.lineSeparator() + errorLines.getFirst());
         }
-        String[] fields = line.split(",");
-        if (fields[0].equalsIgnoreCase("")) {
-            System.out.println("No Vehicle type provided at line: " + lineNumber);
-            return null;
+        else if (errorLines.size() > 1) {
+            StringBuilder message = new StringBuilder("Unable to create Vehicles from lines: ").append(System.lineSeparator());
+            for (int i = 0; i < errorLines.size(); i++) {
+                if (i > 0) {
+                    message.append(", ");
+                }
+                message.append(errorLines.get(i));
+            }
+            Events.emit(EventType.INVALID_RECORD, message.toString());
+        }
+    }
+
+    // The vehicles that have a plan, split into at most groups simulations of neighbouring vehicles
+    private FleetSimulation[] newSimulations(Function<Vehicle, TripPlan> plans, int groups) {
+        List<Vehicle> planned = new ArrayList<>();
+        List<TripPlan> planOf = new ArrayList<>();
+        for (var v : snapshot(fleet.values())) {
+            TripPlan plan = plans.apply(v);
+            if (plan != null) {
+                planned.add(v);
+                planOf.add(plan);
+            }
+        }
+        groups = Math.max(1, Math.min(groups, planned.size()));
+        FleetSimulation[] simulations = new FleetSimulation[groups];
+        for (int g = 0; g < groups; g++) {
+            int from = (int) ((long) planned.size() * g / groups);
+            int to = (int) ((long) planned.size() * (g + 1) / groups);
+            simulations[g] = new FleetSimulation(planned.subList(from, to).toArray(new Vehicle[0]), planOf.subList(from, to).toArray(new TripPlan[0]));
+        }
+        return simulations;
+    }
+
+    // Copies vehicles under the read lock so that long passes do not hold up add and remove
+    private Vehicle[] snapshot(Collection<Vehicle> vehicles) {
+        fleetLock.readLock().lock();
+        try {
+            return vehicles.toArray(new Vehicle[0]);
         }
-        if (fields[1].equalsIgnoreCase("")) {
-            System.out.println("No ID provided at line: " + lineNumber);
-            return null;
+        finally {
+            fleetLock.readLock().unlock();
         }
-        String type = fields[0].trim();
+    }
+
+    // Helper Functions for keeping the indexes and statistics in step with the fleet
+    private void putVehicle(Vehicle v) {
+        fleet.put(v.getId(), v);
+        indexVehicle(v);
+        if (columns != null) {
+            columns.attach(v);
+        }
+    }
+
+    // The vehicle's numbers are read and its observer set under its lock, which every change
+    // to them is made under, so a change is either counted in them or reported afterwards
+    private void indexVehicle(Vehicle v) {
+        addToTypeIndex(v);
+        synchronized (v) {
+            statistics.vehicleAdded(v);
+            efficiencyOrder.vehicleAdded(v);
+            mileageIndex.vehicleAdded(v);
+            if (v instanceof FuelConsumable) {
+                fuelIndex.vehicleAdded(v);
+            }
+            if (v instanceof Maintainable) {
+                maintenanceIndex.vehicleAdded(v);
+            }
+            v.setObserver(observer);
+        }
+    }
 
-        switch (type) {
-            //Car,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,FuelLevel
-            case "Car" : {
-                if (fields.length < 8) {
-                    System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                    return null;
+    private void addToTypeIndex(Vehicle v) {
+        for (var type : INDEXED_TYPES) {
+            if (type.isInstance(v)) {
+                typeIndex.get(type).add(v);
+            }
+        }
+    }
+
+    // Under the vehicle's lock for the same reason as indexVehicle()
+    private void unindexVehicle(Vehicle v) {
+        if (columns != null) {
+            columns.detach(v);
+        }
+        for (var type : INDEXED_TYPES) {
+            if (type.isInstance(v)) {
+                typeIndex.get(type).remove(v);
+            }
+        }
+        synchronized (v) {
+            if (v.getObserver() == observer) {
+                v.setObserver(null);
+            }
+            statistics.vehicleRemoved(v);
+            efficiencyOrder.vehicleRemoved(v);
+            mileageIndex.vehicleRemoved(v);
+            fuelIndex.vehicleRemoved(v);
+            maintenanceIndex.vehicleRemoved(v);
+        }
+    }
+
+    private void clearFleet() {
+        for (var v : fleet.values()) {
+            if (v.getObserver() == observer) {
+                v.setObserver(null);
+            }
+        }
+        if (columns != null) {
+            columns.clear();
+        }
+        clearIndexes();
+        writeJournal(FleetJournal::fleetCleared);
+    }
+
+    private void clearIndexes() {
+        statistics.clear();
+        efficiencyOrder.clear();
+        mileageIndex.clear();
+        fuelIndex.clear();
+        maintenanceIndex.clear();
+        fleet.clear();
+        for (var indexed : typeIndex.values()) {
+            indexed.clear();
+        }
+    }
+
+    // Helper Functions for batches
+    private void executeCommand(FleetCommand c, int index, BatchResult result) {
+        switch (c.getType()) {
+            case ADD -> {
+                if (fleet.containsKey(c.getId())) {
+                    result.setFailure(index, CommandStatus.DUPLICATE, "The vehicle with same ID already exists");
+                    return;
                 }
                 try {
-                    try {
-                        for (int i = 3; i < 8; i++) {
-                            Double.parseDouble(fields[i].trim());
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                        return null;
-                    }
-                    if (Integer.parseInt(fields[5]) != 5) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
-                    }
-                    return new Car(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Integer.parseInt(fields[6]), Double.parseDouble(fields[7]));
+                    addVehicle(c.getVehicle());
                 }
-                catch (OverloadException e) {
-                    System.out.println(e.getMessage());
-                    return null;
+                catch (InvalidOperationException e) {
+                    result.setFailure(index, CommandStatus.INVALID_OPERATION, e.getMessage());
                 }
             }
-            case "Bus" : {
-                //Bus,ID,Model,MaxSpeed,CurrentMileage,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
-                if (fields.length < 10) {
-                    System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                    return null;
-                }
+            case REMOVE -> {
                 try {
-                    try {
-                        for (int i = 3; i < 10; i++) {
-                            Double.parseDouble(fields[i].trim());
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                        return null;
-                    }
-                    if (Integer.parseInt(fields[5]) != 50) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
-                    }
-                    if (Double.parseDouble(fields[7]) != 500) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
-                    }
-                    return new Bus(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Integer.parseInt(fields[6]), Double.parseDouble(fields[8]), Double.parseDouble(fields[9]));
+                    removeVehicle(c.getId());
                 }
-                catch (OverloadException e) {
-                    System.out.println(e.getMessage());
-                    return null;
+                catch (InvalidOperationException e) {
+                    result.setFailure(index, CommandStatus.NOT_FOUND, e.getMessage() + " ID: " + c.getId());
                 }
             }
-            case "Truck" : {
-                //Truck,ID,Model,MaxSpeed,CurrentMileage,CargoCapacity,CurrentCargo,FuelLevel
-                if (fields.length < 8) {
-                    System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                    return null;
-                }
-                try {
-                    try {
-                        for (int i = 3; i < 8; i++) {
-                            Double.parseDouble(fields[i].trim());
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                        return null;
+            default -> applyToVehicle(c, fleet.get(c.getId()), index, result, true);
+        }
+    }
+
+    // Adds and removes are checked as the batch goes but only made once every command has
+    // succeeded, so the batch sees the fleet as it would be through an overlay of them
+    private void executeAtomically(List<FleetCommand> commands, BatchResult result) {
+        // Vehicles added by ID so far, and null for the IDs removed
+        HashMap<String, Vehicle> pending = new HashMap<>();
+        // What each command applied so far changed, for undoing it
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < commands.size(); i++) {
+            FleetCommand c = commands.get(i);
+            String id = c.getId();
+            Vehicle v = pending.containsKey(id) ? pending.get(id) : fleet.get(id);
+            switch (c.getType()) {
+                case ADD -> {
+                    if (v != null) {
+                        result.setFailure(i, CommandStatus.DUPLICATE, "The vehicle with same ID already exists");
                     }
-                    if (Double.parseDouble(fields[5]) != 5000) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
+                    else if (columns != null && FleetColumns.isAttached(c.getVehicle())) {
+                        result.setFailure(i, CommandStatus.INVALID_OPERATION, "The vehicle already belongs to a columnar fleet");
                     }
-                    return new Truck(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[6]), Double.parseDouble(fields[7]));
-                } catch (OverloadException e) {
-                    System.out.println(e.getMessage());
-                    return null;
-                }
-            }
-            case "Airplane" : {
-                //Airplane,ID,Model,MaxSpeed,CurrentMileage,MaxAltitude,PassengerCapacity,CurrentPassengers,CargoCapacity,CurrentCargo,FuelLevel
-                if (fields.length < 11) {
-                    System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                    return null;
-                }
-                try {
-                    try {
-                        for (int i = 3; i < 11; i++) {
-                            Double.parseDouble(fields[i].trim());
-                        }
-                    } catch (NumberFormatException e) {
-                        System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                        return null;
+                    else {
+                        pending.put(id, c.getVehicle());
                     }
-                    if (Integer.parseInt(fields[6]) != 200) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
+                }
+                case REMOVE -> {
+                    if (v == null) {
+                        result.setFailure(i, CommandStatus.NOT_FOUND, "Vehicle ID not found. ID: " + id);
                     }
-                    if (Double.parseDouble(fields[8]) != 10000) {
-                        System.out.println("Defaults were changed at line: " + lineNumber);
-                        return null;
+                    else {
+                        pending.put(id, null);
                     }
-                    return new Airplane(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]), Integer.parseInt(fields[7]), Double.parseDouble(fields[9]), Double.parseDouble(fields[10]));
                 }
-                catch (OverloadException e) {
-                    System.out.println(e.getMessage());
-                    return null;
-                }
-            }
-            case "CargoShip" : {
-                //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo
-                boolean hasSail;
-                if (fields[5].equalsIgnoreCase("true")) {
-                    hasSail = true;
-                }
-                else if (fields[5].equalsIgnoreCase("false")) {
-                    hasSail = false;
-                }
-                else {
-                    System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                    return null;
-                }
-                if (hasSail) {
-                    if (fields.length != 8) {
-                        System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                        return null;
+                default -> {
+                    if (v == null) {
+                        applyToVehicle(c, null, i, result, true);
                     }
-                    try {
-                        try {
-                            for (int i = 3; i < 8; i++) {
-                                if (i == 5) {
-                                    continue;
-                                }
-                                Double.parseDouble(fields[i].trim());
+                    else {
+                        // Saved under the vehicle's lock, so the two states differ by this command
+                        // alone. A move is reported once the lock is let go.
+                        synchronized (v) {
+                            VehicleState before = v.saveState();
+                            applyToVehicle(c, v, i, result, false);
+                            if (result.isSucceeded(i)) {
+                                changes.add(new Change(i, v, before, v.saveState()));
                             }
-                        } catch (NumberFormatException e) {
-                            System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                            return null;
                         }
-                        if (Double.parseDouble(fields[6]) != 50000) {
-                            System.out.println("Defaults were changed at line: " + lineNumber);
-                            return null;
+                        if (c.getType() == FleetCommand.Type.MOVE && result.isSucceeded(i)) {
+                            v.reportMove();
                         }
-                        return new CargoShip(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), hasSail, Double.parseDouble(fields[7]));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage());
-                        return null;
                     }
                 }
-                else {
-                    //CargoShip,ID,Model,MaxSpeed,CurrentMileage,hasSail,CargoCapacity,CurrentCargo,FuelLevel
-                    if (fields.length < 9) {
-                        System.out.println("Incorrect Format for CSV at line: " + line);
-                        return null;
+            }
+            if (!result.isSucceeded(i)) {
+                result.abort(i);
+                for (int k = changes.size() - 1; k >= 0; k--) {
+                    Change change = changes.get(k);
+                    Vehicle changed = change.vehicle();
+                    OperationStatus status = changed.tryUndoChange(change.before(), change.after());
+                    if (status != OperationStatus.OK) {
+                        result.setRollbackConflict(change.index(), "Unable to undo: " + status.getMessage() + " for vehicle ID: " + changed.getId());
                     }
-                    try {
-                        try {
-                            for (int i = 3; i < 9; i++) {
-                                if (i == 5) {
-                                    continue;
-                                }
-                                Double.parseDouble(fields[i].trim());
-                            }
-                        } catch (NumberFormatException e) {
-                            System.out.println("Incorrect Format for CSV at line: " + lineNumber);
-                            return null;
-                        }
-                        if (Double.parseDouble(fields[6]) != 50000) {
-                            System.out.println("Defaults were changed at line: " + lineNumber);
-                            return null;
-                        }
-                        return new CargoShip(fields[1], fields[2], Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), hasSail, Double.parseDouble(fields[7]), Double.parseDouble(fields[8]));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage() + " at line: " + lineNumber);
-                        return null;
+                }
+                return;
+            }
+        }
+        for (var c : commands) {
+            if (c.getType() == FleetCommand.Type.ADD) {
+                Vehicle added = c.getVehicle();
+                putVehicle(added);
+                writeJournal(j -> j.vehicleAdded(added));
+            }
+            else if (c.getType() == FleetCommand.Type.REMOVE) {
+                Vehicle removed = fleet.remove(c.getId());
+                unindexVehicle(removed);
+                writeJournal(j -> j.vehicleRemoved(removed));
+            }
+        }
+    }
+
+    // The command at index of an atomic batch, by its vehicle's state just before and after it
+    private record Change(int index, Vehicle vehicle, VehicleState before, VehicleState after) {}
+
+    // reportMove is false when the caller holds the vehicle's lock and reports a move itself
+    private void applyToVehicle(FleetCommand c, Vehicle v, int index, BatchResult result, boolean reportMove) {
+        if (v == null) {
+            result.setFailure(index, CommandStatus.NOT_FOUND, "Vehicle ID not found. ID: " + c.getId());
+            return;
+        }
+        // Null when the vehicle cannot do what the command asks
+        OperationStatus status = switch (c.getType()) {
+            case MOVE -> reportMove ? v.tryMove(c.getAmount()) : v.tryMoveUnreported(c.getAmount());
+            case REFUEL -> v instanceof FuelConsumable f ? f.tryRefuel(c.getAmount()) : null;
+            case LOAD_CARGO -> v instanceof CargoCarrier carrier ? carrier.tryLoadCargo(c.getAmount()) : null;
+            case UNLOAD_CARGO -> v instanceof CargoCarrier carrier ? carrier.tryUnloadCargo(c.getAmount()) : null;
+            case BOARD_PASSENGERS -> v instanceof PassengerCarrier carrier ? carrier.tryBoardPassengers(c.getCount()) : null;
+            case DISEMBARK_PASSENGERS -> v instanceof PassengerCarrier carrier ? carrier.tryDisembarkPassengers(c.getCount()) : null;
+            default -> null;
+        };
+        if (status == null) {
+            result.setFailure(index, CommandStatus.NOT_SUPPORTED, "Operation not supported for vehicle ID: " + v.getId());
+        }
+        else if (status != OperationStatus.OK) {
+            CommandStatus failure = switch (status) {
+                case INSUFFICIENT_FUEL -> CommandStatus.INSUFFICIENT_FUEL;
+                case CARGO_OVERLOAD, PASSENGER_OVERLOAD -> CommandStatus.OVERLOAD;
+                default -> CommandStatus.INVALID_OPERATION;
+            };
+            result.setFailure(index, failure, status.getMessage() + " for vehicle ID: " + v.getId());
+        }
+    }
+
+    // Helper Functions for the journal
+    private interface JournalWrite {
+        void writeTo(FleetJournal journal) throws IOException;
+    }
+
+    private void writeJournal(JournalWrite write) {
+        FleetJournal j = journal;
+        if (j != null) {
+            try {
+                write.writeTo(j);
+            }
+            catch (IOException e) {
+                Events.emit(EventType.IO_ERROR, "Unable to write to the fleet journal: " + e.getMessage());
+            }
+        }
+    }
+
+    // Not done while this thread holds the write lock, e.g. for each vehicle of a load
+    private void compactJournalIfNeeded() {
+        FleetJournal j = journal;
+        if (j != null && j.getRecordCount() >= compactionThreshold && !fleetLock.isWriteLockedByCurrentThread()) {
+            checkpoint();
+        }
+    }
+
+    // The snapshot is written beside the file and then moved over it, so a crash
+    // part way through leaves the previous snapshot in place
+    private void writeSnapshotFile(String filename) throws IOException {
+        Path target = Path.of(filename);
+        Path temp = Path.of(filename + ".tmp");
+        FleetSnapshot.write(snapshot(fleet.values()), temp.toString());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Passes the changes vehicles report on to the statistics, the indexes and, while it is
+    // open, the journal
+    private class FleetObserver implements VehicleObserver {
+
+        @Override
+        public void mileageChanged(Vehicle vehicle, double oldMileage) {
+            statistics.mileageChanged(vehicle, oldMileage);
+            mileageIndex.valueChanged(vehicle);
+            maintenanceIndex.valueChanged(vehicle);
+        }
+
+        @Override
+        public void efficiencyChanged(Vehicle vehicle, double oldEfficiency) {
+            statistics.efficiencyChanged(vehicle, oldEfficiency);
+            efficiencyOrder.efficiencyChanged(vehicle);
+        }
+
+        @Override
+        public void fuelLevelChanged(Vehicle vehicle) {
+            fuelIndex.valueChanged(vehicle);
+        }
+
+        @Override
+        public void operationPerformed(Vehicle vehicle, VehicleOperation operation) {
+            if (journal != null) {
+                writeJournal(j -> j.vehicleChanged(vehicle, operation));
+            }
+        }
+    }
+
+    // Moves a slice of the fleet, splitting it in half until it is small enough
+    private static class JourneyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 1024;
+
+        private final transient Vehicle[] vehicles;
+        private final String[] failures;
+        private final double distance;
+        private final int from;
+        private final int to;
+
+        JourneyTask(Vehicle[] vehicles, String[] failures, double distance, int from, int to) {
+            this.vehicles = vehicles;
+            this.failures = failures;
+            this.distance = distance;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    OperationStatus status = vehicles[i].tryMove(distance);
+                    if (status != OperationStatus.OK) {
+                        failures[i] = vehicles[i].getMoveFailure(status);
                     }
                 }
+                return;
             }
-            default: {
-                System.out.println("Vehicle Type not found at line: " + lineNumber);
-                return null;
+            int mid = (from + to) >>> 1;
+            invokeAll(new JourneyTask(vehicles, failures, distance, from, mid),
+                    new JourneyTask(vehicles, failures, distance, mid, to));
+        }
+    }
+
+    // Helper Function for writing to a file
+    private void writeToFile(String filename, boolean sortByEfficiency) {
+        if (sortByEfficiency) {
+            sortFleetByEfficiency();
+        }
+        try (FleetCsvWriter writer = new FleetCsvWriter(filename)) {
+            for (var v : snapshot(fleet.values())) {
+                writer.writeVehicle(v);
             }
         }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to write to the file: " + filename);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+import events.CapturingEventSink;
+import events.EventSink;
+import events.EventType;
+import events.Events;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Lets many operators drive one FleetManager over the network, on the loopback address
+// only. Clients send one MenuCommand per line and get back what the menu would have
+// printed, including the fleet's events, followed by a line holding a single ".". Lines
+// of the response that start with "." get another "." in front, as in SMTP.
+//
+// Every session runs on its own virtual thread, so tens of thousands of mostly idle
+// sessions cost little. A command's output is collected in memory and only written once
+// the command is done, so a slow client never holds a fleet lock or a vehicle while it
+// reads and only ever holds up its own session.
+public class FleetServer implements Closeable {
+
+    private static final int BACKLOG = 4096;
+    private static final String GREETING = "Fleet server ready, type help for the list of commands";
+
+    private final FleetManager fleet;
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final Set<Socket> openSockets;
+    private final EventSink previousSink;
+    private final CapturingEventSink events;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    // Port 0 picks a free port, see getPort()
+    public FleetServer(FleetManager fleet, int port) throws IOException {
+        this.fleet = fleet;
+        serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        sessions = Executors.newVirtualThreadPerTaskExecutor();
+        openSockets = ConcurrentHashMap.newKeySet();
+        // Events from sessions go back to their clients, all others where they went before
+        previousSink = Events.getSink();
+        events = new CapturingEventSink(previousSink);
+        Events.setSink(events);
+        acceptor = Thread.ofVirtual().name("fleet-server").start(this::acceptSessions);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getSessionCount() {
+        return openSockets.size();
+    }
+
+    // Stops taking sessions, disconnects the open ones and waits for them to finish
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (var socket : openSockets) {
+            socket.close();
+        }
+        try {
+            acceptor.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessions.close();
+        if (Events.getSink() == events) {
+            Events.setSink(previousSink);
+        }
+    }
+
+    private void acceptSessions() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                openSockets.add(socket);
+                // close() may have missed a socket added while it was closing the others
+                if (closed) {
+                    socket.close();
+                    openSockets.remove(socket);
+                    return;
+                }
+                sessions.execute(() -> runSession(socket));
+            }
+            catch (IOException e) {
+                if (!closed) {
+                    Events.emit(EventType.IO_ERROR, "Unable to accept fleet server session: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void runSession(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            writeResponse(out, GREETING);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (line.trim().equalsIgnoreCase("quit")) {
+                    writeResponse(out, "Goodbye");
+                    break;
+                }
+                writeResponse(out, runCommand(line));
+            }
+        }
+        catch (IOException e) {
+            // The client went away or the server is closing, either way the session is over
+        }
+        finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    private String runCommand(String line) {
+        StringBuilder output = new StringBuilder();
+        events.capture(event -> output.append(event.message()).append('\n'));
+        try {
+            output.append(MenuCommand.execute(fleet, line));
+        }
+        catch (RuntimeException e) {
+            output.append("Unable to run command: ").append(e);
+        }
+        finally {
+            events.release();
+        }
+        return output.toString();
+    }
+
+    private static void writeResponse(Writer out, String response) throws IOException {
+        for (var line : response.isEmpty() ? new String[0] : response.split("\r?\n")) {
+            if (line.startsWith(".")) {
+                out.write('.');
+            }
+            out.write(line);
+            out.write('\n');
+        }
+        out.write(".\n");
+        out.flush();
+    }
+}
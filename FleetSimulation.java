@@ -0,0 +1,149 @@
+import vehicles.OperationStatus;
+import vehicles.Vehicle;
+import vehicles.interfaces.FuelConsumable;
+import vehicles.interfaces.Maintainable;
+
+import java.util.BitSet;
+
+// Runs trip plans for a group of vehicles against a clock in hours, one event at a time in
+// time order, see FleetManager.simulate(). Every vehicle has at most one event in the
+// calendar: the start of its next leg, the end of the leg it is on, or the end of its
+// maintenance.
+//
+// A leg is driven with tryMove() when it starts, so its distance and fuel are booked then.
+// It ends after the vehicle's estimateJourneyTime() for the distance. A vehicle without
+// enough fuel for a leg stops for REFUEL_HOURS first and takes on enough for its whole plan
+// once through. A vehicle whose mileage passes a multiple of its maintenance threshold on
+// a leg is maintained for MAINTENANCE_HOURS before the stop after that leg.
+//
+// Vehicles never meet, so groups of the same fleet can be run on different threads.
+public class FleetSimulation {
+
+    public static final double REFUEL_HOURS = 0.5;
+    public static final double MAINTENANCE_HOURS = 8;
+
+    private static final byte DEPART = 0;
+    private static final byte ARRIVE = 1;
+    private static final byte MAINTAINED = 2;
+
+    private final Vehicle[] vehicles;
+    private final TripPlan[] plans;
+    // The leg each vehicle is on or is about to start, the leg count once a plan is finished
+    private final int[] legs;
+    private final double[] mileageAtDeparture;
+    // Whether the vehicle has just refuelled for the leg it is about to start
+    private final boolean[] refuelled;
+    // Why the vehicles stranded since the start of the current run() stopped, by index
+    private final String[] failures;
+    private final BitSet stranded;
+    private final EventCalendar calendar;
+    private double now;
+
+    // plans[i] is the plan of vehicles[i]
+    public FleetSimulation(Vehicle[] vehicles, TripPlan[] plans) {
+        this.vehicles = vehicles;
+        this.plans = plans;
+        legs = new int[vehicles.length];
+        mileageAtDeparture = new double[vehicles.length];
+        refuelled = new boolean[vehicles.length];
+        failures = new String[vehicles.length];
+        stranded = new BitSet(vehicles.length);
+        calendar = new EventCalendar(vehicles.length);
+        for (int i = 0; i < vehicles.length; i++) {
+            calendar.add(plans[i].getDeparture(), i, DEPART);
+        }
+    }
+
+    // The time of the last event handled
+    public double getTime() {
+        return now;
+    }
+
+    // Handles the events up to and including the given time. A later call carries on from there.
+    public SimulationResult run(double until) {
+        SimulationResult result = new SimulationResult();
+        while (!calendar.isEmpty() && calendar.getFirstTime() <= until) {
+            now = calendar.getFirstTime();
+            int i = calendar.getFirstVehicle();
+            switch (calendar.getFirstKind()) {
+                case DEPART -> depart(i, result);
+                case ARRIVE -> arrive(i, result);
+                case MAINTAINED -> maintained(i, result);
+                default -> throw new IllegalStateException("Unknown simulation event");
+            }
+            result.addEvent();
+        }
+        // Stranded vehicles are listed in the order of the group, not the order they stopped in
+        for (int i = stranded.nextSetBit(0); i >= 0; i = stranded.nextSetBit(i + 1)) {
+            result.addStranded(vehicles[i].getId(), failures[i]);
+            failures[i] = null;
+        }
+        stranded.clear();
+        return result;
+    }
+
+    private void depart(int i, SimulationResult result) {
+        Vehicle v = vehicles[i];
+        TripPlan plan = plans[i];
+        if (legs[i] == plan.getLegCount()) {
+            legs[i] = 0;
+        }
+        double distance = plan.getDistance(legs[i]);
+        double mileage = v.getCurrentMileage();
+        OperationStatus status = v.tryMove(distance);
+        if (status == OperationStatus.OK) {
+            refuelled[i] = false;
+            mileageAtDeparture[i] = mileage;
+            result.addDeparture(distance);
+            calendar.replaceFirst(now + (distance == 0 ? 0 : v.estimateJourneyTime(distance)), ARRIVE);
+            return;
+        }
+        // Refuelling once is always enough, if it was not the vehicle can never make the leg
+        if (status == OperationStatus.INSUFFICIENT_FUEL && !refuelled[i] && v instanceof FuelConsumable f) {
+            double amount = Math.max(plan.getTotalDistance(), distance) / v.getFuelEfficiency();
+            if (Double.isFinite(amount) && f.tryRefuel(amount) == OperationStatus.OK) {
+                refuelled[i] = true;
+                result.addRefuelStop(amount);
+                calendar.replaceFirst(now + REFUEL_HOURS, DEPART);
+                return;
+            }
+        }
+        failures[i] = v.getMoveFailure(status);
+        stranded.set(i);
+        calendar.removeFirst();
+    }
+
+    private void arrive(int i, SimulationResult result) {
+        Vehicle v = vehicles[i];
+        legs[i]++;
+        result.addArrival();
+        if (v instanceof Maintainable m) {
+            double threshold = m.getMaintenanceThreshold();
+            if (threshold > 0 && Math.floor(v.getCurrentMileage() / threshold) > Math.floor(mileageAtDeparture[i] / threshold)) {
+                calendar.replaceFirst(now + MAINTENANCE_HOURS, MAINTAINED);
+                return;
+            }
+        }
+        stop(i, result);
+    }
+
+    private void maintained(int i, SimulationResult result) {
+        Maintainable m = (Maintainable) vehicles[i];
+        m.scheduleMaintenance();
+        m.performMaintenance();
+        result.addMaintenanceStop();
+        stop(i, result);
+    }
+
+    // Stops after the leg just finished, then starts the next one, unless that was the last
+    private void stop(int i, SimulationResult result) {
+        TripPlan plan = plans[i];
+        int finished = legs[i] - 1;
+        if (legs[i] == plan.getLegCount() && !plan.isRepeating()) {
+            result.addFinishedPlan();
+            calendar.removeFirst();
+            return;
+        }
+        calendar.replaceFirst(now + plan.getStop(finished), DEPART);
+    }
+}
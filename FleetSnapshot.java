@@ -0,0 +1,227 @@
+import exceptions.OverloadException;
+import vehicles.Vehicle;
+import vehicles.interfaces.Maintainable;
+import vehicles.models.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Binary fleet snapshot. Numbers are stored as raw primitives so they round trip exactly,
+// and IDs and models are stored once in a string table that records refer to by index.
+//
+// Layout (big endian, as written by DataOutputStream):
+//   int magic, int version
+//   int stringCount, then per string: int byteLength, UTF-8 bytes
+//   int vehicleCount, then per vehicle: int idIndex, int modelIndex, vehicle fields
+//
+// Vehicle fields start with a type tag followed by maxSpeed and currentMileage:
+//   Car:       int currentPassengers, double fuelLevel
+//   Bus:       int currentPassengers, double currentCargo, double fuelLevel
+//   Truck:     double currentCargo, double fuelLevel
+//   Airplane:  double maxAltitude, int currentPassengers, double currentCargo, double fuelLevel
+//   CargoShip: boolean hasSail, double currentCargo, double fuelLevel
+// and, from version 2, end with boolean maintenanceScheduled for a Maintainable vehicle.
+// Version 1 files are still read, and their vehicles schedule maintenance from their mileage.
+public class FleetSnapshot {
+
+    private static final int MAGIC = 0x464C5453; // "FLTS"
+    private static final int VERSION = 2;
+
+    private static final byte CAR = 1;
+    private static final byte BUS = 2;
+    private static final byte TRUCK = 3;
+    private static final byte AIRPLANE = 4;
+    private static final byte CARGO_SHIP = 5;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // The fewest bytes a string table entry and a vehicle record take, so that a count
+    // can be checked against the size of the file before anything is allocated for it
+    private static final int MIN_STRING_SIZE = 4;
+    private static final int MIN_VEHICLE_SIZE = 37;
+
+    public static void write(Vehicle[] vehicles, String filename) throws IOException {
+        // Build the string table first so each ID and model is written once
+        HashMap<String, Integer> stringIndex = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] idIndex = new int[vehicles.length];
+        int[] modelIndex = new int[vehicles.length];
+        for (int i = 0; i < vehicles.length; i++) {
+            idIndex[i] = intern(vehicles[i].getId(), stringIndex, strings);
+            modelIndex[i] = intern(vehicles[i].getModel(), stringIndex, strings);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(strings.size());
+            for (var s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(vehicles.length);
+            for (int i = 0; i < vehicles.length; i++) {
+                out.writeInt(idIndex[i]);
+                out.writeInt(modelIndex[i]);
+                writeFields(out, vehicles[i]);
+            }
+        }
+    }
+
+    public static List<Vehicle> read(String filename) throws IOException {
+        try (FileInputStream file = new FileInputStream(filename);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, BUFFER_SIZE))) {
+            long size = file.getChannel().size();
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a fleet snapshot: " + filename);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported fleet snapshot version: " + version);
+            }
+
+            String[] strings = new String[checkCount(in.readInt(), MIN_STRING_SIZE, size)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[checkCount(in.readInt(), 1, size)];
+                in.readFully(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int vehicleCount = checkCount(in.readInt(), MIN_VEHICLE_SIZE, size);
+            List<Vehicle> vehicles = new ArrayList<>(vehicleCount);
+            for (int i = 0; i < vehicleCount; i++) {
+                int id = in.readInt();
+                int model = in.readInt();
+                if (id < 0 || id >= strings.length || model < 0 || model >= strings.length) {
+                    throw new IOException("Invalid string reference in fleet snapshot");
+                }
+                vehicles.add(readFields(in, strings[id], strings[model], version >= 2));
+            }
+            return vehicles;
+        }
+    }
+
+    // Writes a vehicle's type tag and state, everything except its ID and model
+    public static void writeFields(DataOutput out, Vehicle v) throws IOException {
+        switch (v) {
+            case Car x -> {
+                out.writeByte(CAR);
+                out.writeDouble(x.getMaxSpeed());
+                out.writeDouble(x.getCurrentMileage());
+                out.writeInt(x.getCurrentPassengers());
+                out.writeDouble(x.getFuelLevel());
+            }
+            case Bus x -> {
+                out.writeByte(BUS);
+                out.writeDouble(x.getMaxSpeed());
+                out.writeDouble(x.getCurrentMileage());
+                out.writeInt(x.getCurrentPassengers());
+                out.writeDouble(x.getCurrentCargo());
+                out.writeDouble(x.getFuelLevel());
+            }
+            case Truck x -> {
+                out.writeByte(TRUCK);
+                out.writeDouble(x.getMaxSpeed());
+                out.writeDouble(x.getCurrentMileage());
+                out.writeDouble(x.getCurrentCargo());
+                out.writeDouble(x.getFuelLevel());
+            }
+            case Airplane x -> {
+                out.writeByte(AIRPLANE);
+                out.writeDouble(x.getMaxSpeed());
+                out.writeDouble(x.getCurrentMileage());
+                out.writeDouble(x.getMaxAltitude());
+                out.writeInt(x.getCurrentPassengers());
+                out.writeDouble(x.getCurrentCargo());
+                out.writeDouble(x.getFuelLevel());
+            }
+            case CargoShip x -> {
+                out.writeByte(CARGO_SHIP);
+                out.writeDouble(x.getMaxSpeed());
+                out.writeDouble(x.getCurrentMileage());
+                out.writeBoolean(x.getHasSail());
+                out.writeDouble(x.getCurrentCargo());
+                out.writeDouble(x.getFuelLevel());
+            }
+            default -> throw new IOException("Unsupported vehicle type: " + v.getClass().getSimpleName());
+        }
+        if (v instanceof Maintainable x) {
+            out.writeBoolean(x.isMaintenanceScheduled());
+        }
+    }
+
+    // Reads what writeFields wrote and rebuilds the vehicle. Fields written before version 2
+    // have no maintenance schedule.
+    public static Vehicle readFields(DataInput in, String id, String model, boolean withSchedule) throws IOException {
+        byte tag = in.readByte();
+        double maxSpeed = in.readDouble();
+        double currentMileage = in.readDouble();
+        Vehicle v;
+        try {
+            v = switch (tag) {
+                case CAR -> {
+                    int currentPassengers = in.readInt();
+                    double fuelLevel = in.readDouble();
+                    yield new Car(id, model, maxSpeed, currentMileage, currentPassengers, fuelLevel);
+                }
+                case BUS -> {
+                    int currentPassengers = in.readInt();
+                    double currentCargo = in.readDouble();
+                    double fuelLevel = in.readDouble();
+                    yield new Bus(id, model, maxSpeed, currentMileage, currentPassengers, currentCargo, fuelLevel);
+                }
+                case TRUCK -> {
+                    double currentCargo = in.readDouble();
+                    double fuelLevel = in.readDouble();
+                    yield new Truck(id, model, maxSpeed, currentMileage, currentCargo, fuelLevel);
+                }
+                case AIRPLANE -> {
+                    double maxAltitude = in.readDouble();
+                    int currentPassengers = in.readInt();
+                    double currentCargo = in.readDouble();
+                    double fuelLevel = in.readDouble();
+                    yield new Airplane(id, model, maxSpeed, currentMileage, maxAltitude, currentPassengers, currentCargo, fuelLevel);
+                }
+                case CARGO_SHIP -> {
+                    boolean hasSail = in.readBoolean();
+                    double currentCargo = in.readDouble();
+                    double fuelLevel = in.readDouble();
+                    yield new CargoShip(id, model, maxSpeed, currentMileage, hasSail, currentCargo, fuelLevel);
+                }
+                default -> throw new IOException("Unknown vehicle type tag: " + tag);
+            };
+        }
+        catch (OverloadException e) {
+            throw new IOException("Invalid vehicle record: " + e.getMessage());
+        }
+        if (withSchedule && v instanceof Maintainable x) {
+            x.setMaintenanceScheduled(in.readBoolean());
+        }
+        return v;
+    }
+
+    private static int intern(String s, HashMap<String, Integer> stringIndex, List<String> strings) {
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            stringIndex.put(s, index);
+            strings.add(s);
+        }
+        return index;
+    }
+
+    // A count of items of at least itemSize bytes each that cannot fit in a file of the
+    // given size is corrupt, and is rejected before an array is made for it
+    private static int checkCount(int count, int itemSize, long size) throws IOException {
+        if (count < 0 || (long) count * itemSize > size) {
+            throw new IOException("Corrupt fleet snapshot");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,181 @@
+import vehicles.Vehicle;
+import vehicles.interfaces.Maintainable;
+import vehicles.interfaces.VehicleObserver;
+import vehicles.types.AirVehicle;
+import vehicles.types.LandVehicle;
+import vehicles.types.WaterVehicle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.DoubleAdder;
+
+// Running totals behind FleetManager.generateReport(). The fleet tells it about
+// added and removed vehicles, and passes on the changes each vehicle reports to it.
+// Vehicle changes may be reported from several threads at once, e.g. parallel journeys.
+// Added and removed vehicles are only reported under the fleet's write lock.
+//
+// The vehicles needing maintenance are listed in fleet order, whatever order they came to
+// need it in. Each maintainable vehicle is given its position in the fleet when it is added,
+// and the positions are given out again when the fleet is put in another order.
+public class FleetStatistics implements VehicleObserver {
+
+    private volatile int totalCount;
+    private volatile int landVehicles;
+    private volatile int airVehicles;
+    private volatile int waterVehicles;
+    private DoubleAdder totalMileage;
+    private DoubleAdder totalEfficiency;
+    // Maintainable vehicles by position in the fleet, and the ones needing maintenance among
+    // them. Both are kept under the lock of needingMaintenance.
+    private HashMap<Vehicle, Long> positions;
+    private TreeMap<Long, Vehicle> needingMaintenance;
+    private long nextPosition;
+
+    public FleetStatistics() {
+        totalMileage = new DoubleAdder();
+        totalEfficiency = new DoubleAdder();
+        positions = new HashMap<>();
+        needingMaintenance = new TreeMap<>();
+    }
+
+    public void vehicleAdded(Vehicle v) {
+        totalCount++;
+        totalMileage.add(v.getCurrentMileage());
+        totalEfficiency.add(v.getFuelEfficiency());
+
+        switch (v) {
+            case LandVehicle landVehicle -> landVehicles++;
+            case AirVehicle airVehicle -> airVehicles++;
+            case WaterVehicle waterVehicle -> waterVehicles++;
+            default -> {}
+        }
+        if (v instanceof Maintainable) {
+            synchronized (needingMaintenance) {
+                positions.put(v, nextPosition++);
+            }
+            updateMaintenance(v);
+        }
+    }
+
+    public void vehicleRemoved(Vehicle v) {
+        totalCount--;
+        totalMileage.add(-v.getCurrentMileage());
+        totalEfficiency.add(-v.getFuelEfficiency());
+
+        switch (v) {
+            case LandVehicle landVehicle -> landVehicles--;
+            case AirVehicle airVehicle -> airVehicles--;
+            case WaterVehicle waterVehicle -> waterVehicles--;
+            default -> {}
+        }
+        synchronized (needingMaintenance) {
+            Long position = positions.remove(v);
+            if (position != null) {
+                needingMaintenance.remove(position);
+            }
+        }
+
+        // Avoid carrying rounding error once the fleet is empty
+        if (totalCount == 0) {
+            totalMileage.reset();
+            totalEfficiency.reset();
+        }
+    }
+
+    public void clear() {
+        totalCount = 0;
+        landVehicles = 0;
+        airVehicles = 0;
+        waterVehicles = 0;
+        totalMileage.reset();
+        totalEfficiency.reset();
+        synchronized (needingMaintenance) {
+            positions.clear();
+            needingMaintenance.clear();
+            nextPosition = 0;
+        }
+    }
+
+    // Gives the vehicles their positions again after the fleet has been put in their order
+    public void fleetReordered(List<Vehicle> vehicles) {
+        synchronized (needingMaintenance) {
+            needingMaintenance.clear();
+            nextPosition = 0;
+            for (var v : vehicles) {
+                if (v instanceof Maintainable x && positions.containsKey(v)) {
+                    long position = nextPosition++;
+                    positions.put(v, position);
+                    if (x.needsMaintenance()) {
+                        needingMaintenance.put(position, v);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void mileageChanged(Vehicle vehicle, double oldMileage) {
+        totalMileage.add(vehicle.getCurrentMileage() - oldMileage);
+        // Most changes leave a vehicle on the same side of its threshold, and then the set,
+        // which is as big as the fleet, is left alone
+        if (vehicle instanceof Maintainable x && (oldMileage > x.getMaintenanceThreshold()) != x.needsMaintenance()) {
+            updateMaintenance(vehicle);
+        }
+    }
+
+    @Override
+    public void efficiencyChanged(Vehicle vehicle, double oldEfficiency) {
+        totalEfficiency.add(vehicle.getFuelEfficiency() - oldEfficiency);
+    }
+
+    private void updateMaintenance(Vehicle v) {
+        if (v instanceof Maintainable x) {
+            synchronized (needingMaintenance) {
+                // Read under the lock, so the last of two changes racing here has the last word
+                boolean needed = x.needsMaintenance();
+                Long position = positions.get(v);
+                if (position == null) {
+                    return;
+                }
+                if (needed) {
+                    needingMaintenance.put(position, v);
+                }
+                else {
+                    needingMaintenance.remove(position);
+                }
+            }
+        }
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public int getLandVehicles() {
+        return landVehicles;
+    }
+
+    public int getAirVehicles() {
+        return airVehicles;
+    }
+
+    public int getWaterVehicles() {
+        return waterVehicles;
+    }
+
+    public double getTotalMileage() {
+        return totalMileage.sum();
+    }
+
+    public double getAverageEfficiency() {
+        return totalEfficiency.sum() / totalCount;
+    }
+
+    public List<Vehicle> getVehiclesNeedingMaintenance() {
+        synchronized (needingMaintenance) {
+            return new ArrayList<>(needingMaintenance.values());
+        }
+    }
+}
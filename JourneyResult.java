@@ -0,0 +1,44 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Outcome of a fleet-wide journey: how many vehicles moved, and why the others did not
+public class JourneyResult {
+
+    private int completed;
+    private LinkedHashMap<String, String> failures;
+
+    public JourneyResult() {
+        failures = new LinkedHashMap<>();
+    }
+
+    public void addCompleted() {
+        completed++;
+    }
+
+    public void addFailure(String id, String message) {
+        failures.put(id, message);
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getFailed() {
+        return failures.size();
+    }
+
+    // Failure messages keyed by vehicle ID, in fleet order
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format("Journeys completed: %d%nJourneys failed: %d%n", completed, failures.size()));
+        for (var message : failures.values()) {
+            result.append(message).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,102 @@
+import vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of FleetManager.planLoading(): the vehicle each consignment goes on, or null if
+// none had room for it, and how much each vehicle takes. Nothing has been loaded yet, see
+// FleetManager.applyLoadPlan().
+public class LoadPlan {
+
+    private final double[] consignments;
+    private final Vehicle[] vehicles;
+    // Index in vehicles for each consignment, -1 for the ones left over
+    private final int[] vehicleOf;
+    // What each vehicle takes, by index in vehicles
+    private final double[] loads;
+    private final int[] counts;
+    private int placed;
+    private int vehiclesUsed;
+    private double totalWeight;
+
+    public LoadPlan(double[] consignments, Vehicle[] vehicles, int[] vehicleOf, double[] loads) {
+        this.consignments = consignments;
+        this.vehicles = vehicles;
+        this.vehicleOf = vehicleOf;
+        this.loads = loads;
+        counts = new int[vehicles.length];
+        for (int v : vehicleOf) {
+            if (v >= 0) {
+                placed++;
+                if (counts[v]++ == 0) {
+                    vehiclesUsed++;
+                    totalWeight += loads[v];
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return consignments.length;
+    }
+
+    public double getWeight(int consignment) {
+        return consignments[consignment];
+    }
+
+    public Vehicle getVehicle(int consignment) {
+        int v = vehicleOf[consignment];
+        return v >= 0 ? vehicles[v] : null;
+    }
+
+    public int getPlaced() {
+        return placed;
+    }
+
+    public int getVehiclesUsed() {
+        return vehiclesUsed;
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+
+    // The vehicles that take something, in the order they were filled
+    public List<Vehicle> getLoadedVehicles() {
+        List<Vehicle> loaded = new ArrayList<>();
+        for (int v = 0; v < vehicles.length; v++) {
+            if (counts[v] > 0) {
+                loaded.add(vehicles[v]);
+            }
+        }
+        return loaded;
+    }
+
+    // The consignments no vehicle had room for, by index
+    public List<Integer> getUnplaced() {
+        List<Integer> unplaced = new ArrayList<>();
+        for (int i = 0; i < vehicleOf.length; i++) {
+            if (vehicleOf[i] < 0) {
+                unplaced.add(i);
+            }
+        }
+        return unplaced;
+    }
+
+    // One load for each vehicle that takes something, of all its consignments together
+    public List<FleetCommand> toCommands() {
+        List<FleetCommand> commands = new ArrayList<>();
+        for (int v = 0; v < vehicles.length; v++) {
+            if (counts[v] > 0) {
+                commands.add(FleetCommand.loadCargo(vehicles[v].getId(), loads[v]));
+            }
+        }
+        return commands;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Consignments placed: %d%nConsignments unplaced: %d%nVehicles used: %d%nTotal weight: %.2f%n",
+                placed, consignments.length - placed, vehiclesUsed, totalWeight);
+    }
+}
@@ -1,8 +1,8 @@
 import exceptions.InvalidOperationException;
 import exceptions.OverloadException;
 import vehicles.Vehicle;
-import vehicles.models.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.List;
@@ -10,12 +10,36 @@ import java.util.Scanner;
 
 public class Main {
 
+    private static final int DEFAULT_PORT = 7070;
+
     public static void main(String[] args) {
         FleetManager fleet = new FleetManager();
 
+        // With --server [port], operators can also drive the fleet over the loopback
+        // address while the menu runs, see FleetServer
+        FleetServer server = null;
+        if (args.length > 0 && args[0].equals("--server")) {
+            try {
+                server = new FleetServer(fleet, args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+                System.out.println("Fleet server listening on port: " + server.getPort());
+            }
+            catch (IOException | NumberFormatException e) {
+                System.out.println("Unable to start fleet server: " + e.getMessage());
+            }
+        }
+
         // vehicles.csv contains some pre-defined vehicle data for the program.
         // Use Menu Option 8, then enter vehicles.csv if you want to use the data
         CLI(fleet);
+
+        if (server != null) {
+            try {
+                server.close();
+            }
+            catch (IOException e) {
+                System.out.println("Unable to stop fleet server: " + e.getMessage());
+            }
+        }
     }
 
     private static void CLI(FleetManager fleet) {
@@ -37,14 +61,15 @@ public class Main {
 
         System.out.println(menuString);
 
+        Scanner scanner = new Scanner(System.in);
         while (true) {
-            Scanner scanner = new Scanner(System.in);
-            String input = scanner.nextLine();
+            // Trimmed once, rather than matching a pattern for every option
+            String option = scanner.nextLine().trim();
 
-            if (input.matches("\\s*0\\s*")) {
+            if (option.equals("0")) {
                 System.out.println(menuString);
             }
-            else if (input.matches("\\s*1\\s*")) {
+            else if (option.equals("1")) {
                 System.out.println("Please enter the type of vehicle (Car/Bus/Truck/Airplane/CargoShip: ");
 
                 String type = scanner.nextLine();
@@ -100,7 +125,7 @@ public class Main {
                     System.out.println("Vehicle added successfully: " + newVehicle.getId());
                 }
             }
-            else if (input.matches("\\s*2\\s*")) {
+            else if (option.equals("2")) {
                 System.out.println("Please enter Vehicle ID: ");
                 String Id = scanner.nextLine();
 
@@ -110,63 +135,42 @@ public class Main {
                     System.out.println(e.getMessage());
                 }
             }
-            else if (input.matches("\\s*3\\s*")) {
+            else if (option.equals("3")) {
                 System.out.println("Please enter the distance: ");
                 double distance = getADoubleValue(scanner);
                 fleet.startAllJourneys(distance);
             }
-            else if (input.matches("\\s*4\\s*")) {
+            else if (option.equals("4")) {
                 System.out.println("Please enter the fuel amount: ");
                 double fuelAmount = getADoubleValue(scanner);
                 fleet.refuelAll(fuelAmount);
             }
-            else if (input.matches("\\s*5\\s*")) {
+            else if (option.equals("5")) {
                 fleet.maintainAll();
             }
-            else if (input.matches("\\s*6\\s*")) {
+            else if (option.equals("6")) {
                 System.out.println(fleet.generateReport());
             }
-            else if (input.matches("\\s*7\\s*")) {
+            else if (option.equals("7")) {
                 System.out.println("Please enter the file name: ");
                 String filename = scanner.nextLine();
 
                 fleet.saveToFile(filename);
             }
-            else if (input.matches("\\s*8\\s*")) {
+            else if (option.equals("8")) {
                 System.out.println("Please enter the file name: ");
                 String filename = scanner.nextLine();
 
                 fleet.loadFromFile(filename);
             }
-            else if (input.matches("\\s*9\\s*")) {
+            else if (option.equals("9")) {
                 System.out.println("Please enter the vehicle type: (LandVehicle/AirVehicle/WaterVehicle/Car/Bus/Truck/Airplane/CargoShip");
                 System.out.println("\t\t FuelConsumable/PassengerCarrier/CargoCarrier/Maintainable)");
                 String type = scanner.nextLine();
 
                 List<Vehicle> byType;
-                Class<?> cl = null;
+                Class<?> cl = MenuCommand.vehicleType(type);
 
-                if (type.matches("^(?i)\\s*(land\\s*vehicle|air\\s*vehicle|water\\s*vehicle)\\s*$")) {
-                    try {
-                        cl = Class.forName("vehicles.types." + getFinalClass(type));
-                    } catch (ClassNotFoundException e) {
-                        System.out.println("Please enter a valid class name");
-                    }
-                }
-                else if (type.matches("^(?i)\\s*(car|bus|truck|air\\s*plane|cargo\\s*ship)\\s*$")) {
-                    try {
-                        cl = Class.forName("vehicles.models." + getFinalClass(type));
-                    } catch (ClassNotFoundException e) {
-                        System.out.println("Please enter a valid class name");
-                    }
-                }
-                else if (type.matches("^(?i)\\s*(fuel\\s*consumable|passenger\\s*carrier|cargo\\s*carrier|maintainable)\\s*$")) {
-                    try {
-                        cl = Class.forName("vehicles.interfaces." + getFinalClass(type));
-                    } catch (ClassNotFoundException e) {
-                        System.out.println("Please enter a valid class name");
-                    }
-                }
                 if (cl != null) {
                     byType = fleet.searchByType(cl);
                     if (!byType.isEmpty()) {
@@ -183,7 +187,7 @@ public class Main {
                     System.out.println("Please enter a valid class name");
                 }
             }
-            else if (input.matches("\\s*10\\s*")) {
+            else if (option.equals("10")) {
                 List<Vehicle> needsMaintenance = fleet.getVehiclesNeedingMaintenance();
 
                 if (needsMaintenance.isEmpty()) {
@@ -193,7 +197,7 @@ public class Main {
                     System.out.printf("Vehicle ID %s needs maintenance.%n", i.getId());
                 }
             }
-            else if (input.matches("\\s*11\\s*")) {
+            else if (option.equals("11")) {
                 break;
             }
             else {
@@ -202,30 +206,13 @@ public class Main {
         }
     }
 
-    private static String getFinalClass(String input) {
-        String finalClass = input.trim().replaceAll("\\s+", "").toLowerCase();
-        return switch (finalClass) {
-            case "landvehicle" -> "LandVehicle";
-            case "airvehicle" -> "AirVehicle";
-            case "watervehicle" -> "WaterVehicle";
-            case "car" -> "Car";
-            case "bus" -> "Bus";
-            case "truck" -> "Truck";
-            case "airplane" -> "Airplane";
-            case "cargoship" -> "CargoShip";
-            case "fuelconsumable" -> "FuelConsumable";
-            case "passengercarrier"-> "PassengerCarrier";
-            case "cargocarrier"-> "CargoCarrier";
-            case "maintainable"-> "Maintainable";
-            default -> null;
-        };
-    }
-
     private static double getADoubleValue(Scanner scanner) {
         double doubleVal;
         while (true) {
             try {
                 doubleVal = scanner.nextDouble();
+                // The scanner is kept across menu options, so the end of the line must not be left for the next one
+                scanner.nextLine();
                 break;
             } catch (InputMismatchException e) {
                 System.out.println("Please enter a number value");
@@ -266,6 +253,8 @@ public class Main {
         while (true) {
             try {
                 currentPassengers = scanner.nextInt();
+                // The scanner is kept across menu options, so the end of the line must not be left for the next one
+                scanner.nextLine();
                 break;
             } catch (InputMismatchException e) {
                 System.out.println("Please enter a number value");
@@ -291,55 +280,11 @@ public class Main {
     }
 
     private static Vehicle createVehicle(ArrayList<String> data) {
-        // Car -> 6, Bus -> 7, Truck -> 6, Airplane -> 8, CargoShip -> 7
-        switch (data.size()) {
-            case 6 : {
-                if (data.get(0).equalsIgnoreCase("car")) {
-                    try {
-                        return new Car(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Integer.parseInt(data.get(5)));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage());
-                        return null;
-                    }
-                }
-                else if (data.get(0).equalsIgnoreCase("truck")) {
-                    try {
-                        return new Truck(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Double.parseDouble(data.get(5)));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage());
-                        return null;
-                    }
-                }
-            }
-            case 7 : {
-                if (data.get(0).equalsIgnoreCase("bus")) {
-                    try {
-                        return new Bus(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Integer.parseInt(data.get(5)), Double.parseDouble(data.get(6)));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage());
-                        return null;
-                    }
-                }
-                else if (data.get(0).equalsIgnoreCase("cargoship")) {
-                    try {
-                        return new CargoShip(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Boolean.parseBoolean(data.get(5)), Double.parseDouble(data.get(6)));
-                    } catch (OverloadException e) {
-                        System.out.println(e.getMessage());
-                        return null;
-                    }
-                }
-            }
-            case 8 : {
-                try {
-                    return new Airplane(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Double.parseDouble(data.get(5)), Integer.parseInt(data.get(6)), Double.parseDouble(data.get(7)));
-                } catch (OverloadException e) {
-                    System.out.println(e.getMessage());
-                    return null;
-                }
-            }
-            default: {
-                return null;
-            }
+        try {
+            return MenuCommand.createVehicle(data);
+        } catch (OverloadException e) {
+            System.out.println(e.getMessage());
+            return null;
         }
     }
 }
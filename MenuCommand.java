@@ -0,0 +1,295 @@
+import exceptions.InvalidOperationException;
+import exceptions.OverloadException;
+import vehicles.Vehicle;
+import vehicles.interfaces.CargoCarrier;
+import vehicles.interfaces.FuelConsumable;
+import vehicles.interfaces.Maintainable;
+import vehicles.interfaces.PassengerCarrier;
+import vehicles.models.*;
+import vehicles.types.AirVehicle;
+import vehicles.types.LandVehicle;
+import vehicles.types.WaterVehicle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// The menu's fleet operations as one-line commands, e.g. "journey 100" or
+// "add car,V001,Toyota Corolla,180,15000,3". FleetServer runs each line a client sends
+// through execute(), and ScriptRunner parses a whole file of them before running any.
+// What the fleet reports while a command runs comes out as events, a command only
+// returns what the menu itself would print.
+public class MenuCommand {
+
+    public static final String HELP = """
+            Available Commands:
+            add <type>,<id>,<model>,<max speed>,<mileage>,...  fields in the order the menu asks for them
+            remove <id>
+            journey <distance>
+            refuel <amount>
+            maintain
+            report
+            search <type>
+            due
+            save <file name>
+            load <file name>
+            help
+            quit""";
+
+    // Compiled once, the menu and every search command use them
+    private static final Pattern TYPE_NAME = Pattern.compile("^(?i)\\s*(land\\s*vehicle|air\\s*vehicle|water\\s*vehicle"
+            + "|car|bus|truck|air\\s*plane|cargo\\s*ship"
+            + "|fuel\\s*consumable|passenger\\s*carrier|cargo\\s*carrier|maintainable)\\s*$");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    public enum Type {
+        HELP("help"),
+        ADD("add"),
+        REMOVE("remove"),
+        JOURNEY("journey"),
+        REFUEL("refuel"),
+        MAINTAIN("maintain"),
+        REPORT("report"),
+        SEARCH("search"),
+        DUE("due"),
+        SAVE("save"),
+        LOAD("load");
+
+        private final String keyword;
+
+        Type(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+    }
+
+    private static final Map<String, Type> KEYWORDS = new HashMap<>();
+
+    static {
+        for (var type : Type.values()) {
+            KEYWORDS.put(type.getKeyword(), type);
+        }
+    }
+
+    // Null if the line does not start with a command, the argument is then the whole line
+    private final Type type;
+    private final String argument;
+    // What parse() made of the argument, for the commands that take one
+    private final double value;
+    private final List<String> fields;
+    private final Class<?> searchType;
+    // Why the line is not a command that can be run, or null if it is one
+    private final String error;
+
+    private MenuCommand(Type type, String argument, double value, List<String> fields, Class<?> searchType, String error) {
+        this.type = type;
+        this.argument = argument;
+        this.value = value;
+        this.fields = fields;
+        this.searchType = searchType;
+        this.error = error;
+    }
+
+    // Parses and runs line, returning what the fleet rejected it with if it did
+    public static String execute(FleetManager fleet, String line) {
+        try {
+            return parse(line).run(fleet);
+        }
+        catch (InvalidOperationException | OverloadException e) {
+            return e.getMessage();
+        }
+    }
+
+    // Everything about a line that does not depend on the fleet is worked out here, once,
+    // so a command can be run any number of times without parsing it again
+    public static MenuCommand parse(String line) {
+        String trimmed = line.trim();
+        int space = trimmed.indexOf(' ');
+        String name = (space < 0 ? trimmed : trimmed.substring(0, space)).toLowerCase();
+        Type type = KEYWORDS.get(name);
+        if (type == null) {
+            return new MenuCommand(null, trimmed, 0, null, null, "Unknown command: " + name + ", type help for the list of commands");
+        }
+        String argument = space < 0 ? "" : trimmed.substring(space + 1).trim();
+
+        double value = 0;
+        List<String> fields = null;
+        Class<?> searchType = null;
+        String error = null;
+        switch (type) {
+            case HELP, REMOVE, MAINTAIN, REPORT, DUE -> {
+            }
+            case ADD -> {
+                fields = new ArrayList<>();
+                for (var field : argument.split(",")) {
+                    fields.add(field.trim());
+                }
+            }
+            case JOURNEY, REFUEL -> {
+                try {
+                    value = Double.parseDouble(argument);
+                }
+                catch (NumberFormatException e) {
+                    error = "Please enter a number value";
+                }
+            }
+            case SEARCH -> {
+                searchType = vehicleType(argument);
+                if (searchType == null) {
+                    error = "Please enter a valid class name";
+                }
+            }
+            case SAVE, LOAD -> {
+                if (argument.isEmpty()) {
+                    error = "Please enter the file name";
+                }
+            }
+        }
+        return new MenuCommand(type, argument, value, fields, searchType, error);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getArgument() {
+        return argument;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    // Returns what the menu would print. What the fleet reports while the command runs
+    // comes out as events, and a vehicle that cannot be added or removed throws.
+    public String run(FleetManager fleet) throws InvalidOperationException, OverloadException {
+        if (error != null) {
+            return error;
+        }
+        return switch (type) {
+            case HELP -> HELP;
+            case ADD -> add(fleet, fields);
+            case REMOVE -> {
+                fleet.removeVehicle(argument);
+                yield "Vehicle removed successfully: " + argument;
+            }
+            case JOURNEY -> {
+                fleet.startAllJourneys(value);
+                yield "";
+            }
+            case REFUEL -> {
+                fleet.refuelAll(value);
+                yield "";
+            }
+            case MAINTAIN -> {
+                fleet.maintainAll();
+                yield "";
+            }
+            case REPORT -> fleet.generateReport();
+            case SEARCH -> search(fleet, searchType);
+            case DUE -> {
+                List<Vehicle> needsMaintenance = fleet.getVehiclesNeedingMaintenance();
+                if (needsMaintenance.isEmpty()) {
+                    yield "None of the vehicles need maintenance.";
+                }
+                StringBuilder result = new StringBuilder();
+                for (var v : needsMaintenance) {
+                    result.append(String.format("Vehicle ID %s needs maintenance.%n", v.getId()));
+                }
+                yield result.toString();
+            }
+            case SAVE -> {
+                fleet.saveToFile(argument);
+                yield "";
+            }
+            case LOAD -> {
+                fleet.loadFromFile(argument);
+                yield "";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        if (type == null) {
+            return argument;
+        }
+        return argument.isEmpty() ? type.getKeyword() : type.getKeyword() + " " + argument;
+    }
+
+    // The class for a type name as the menu accepts them, e.g. "land vehicle", "Truck" or
+    // "cargocarrier", or null if it names none
+    public static Class<?> vehicleType(String name) {
+        if (!TYPE_NAME.matcher(name).matches()) {
+            return null;
+        }
+        return switch (SPACES.matcher(name).replaceAll("").toLowerCase()) {
+            case "landvehicle" -> LandVehicle.class;
+            case "airvehicle" -> AirVehicle.class;
+            case "watervehicle" -> WaterVehicle.class;
+            case "car" -> Car.class;
+            case "bus" -> Bus.class;
+            case "truck" -> Truck.class;
+            case "airplane" -> Airplane.class;
+            case "cargoship" -> CargoShip.class;
+            case "fuelconsumable" -> FuelConsumable.class;
+            case "passengercarrier" -> PassengerCarrier.class;
+            case "cargocarrier" -> CargoCarrier.class;
+            case "maintainable" -> Maintainable.class;
+            default -> null;
+        };
+    }
+
+    // Builds a vehicle from its type followed by its fields, in the order the menu asks for
+    // them. Returns null if the type is not supported or the number of fields is wrong.
+    public static Vehicle createVehicle(List<String> data) throws OverloadException {
+        String type = data.getFirst().trim().toLowerCase();
+        return switch (type) {
+            case "car" -> data.size() != 6 ? null : new Car(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Integer.parseInt(data.get(5)));
+            case "truck" -> data.size() != 6 ? null : new Truck(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Double.parseDouble(data.get(5)));
+            case "bus" -> data.size() != 7 ? null : new Bus(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Integer.parseInt(data.get(5)), Double.parseDouble(data.get(6)));
+            case "cargoship" -> data.size() != 7 ? null : new CargoShip(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Boolean.parseBoolean(data.get(5)), Double.parseDouble(data.get(6)));
+            case "airplane" -> data.size() != 8 ? null : new Airplane(data.get(1), data.get(2), Double.parseDouble(data.get(3)), Double.parseDouble(data.get(4)), Double.parseDouble(data.get(5)), Integer.parseInt(data.get(6)), Double.parseDouble(data.get(7)));
+            default -> null;
+        };
+    }
+
+    private static String add(FleetManager fleet, List<String> data) throws InvalidOperationException, OverloadException {
+        Vehicle v;
+        try {
+            v = createVehicle(data);
+        }
+        catch (NumberFormatException e) {
+            throw new InvalidOperationException("Please enter a number value");
+        }
+        if (v == null) {
+            throw new InvalidOperationException("Please enter a supported vehicle name and all of its fields");
+        }
+        if (v.getId().isEmpty()) {
+            throw new InvalidOperationException("Please enter a valid ID");
+        }
+        fleet.addVehicle(v);
+        return "Vehicle added successfully: " + v.getId();
+    }
+
+    private static String search(FleetManager fleet, Class<?> type) {
+        List<Vehicle> byType = fleet.searchByType(type);
+        if (byType.isEmpty()) {
+            return "No vehicles found for the given class";
+        }
+        StringBuilder result = new StringBuilder();
+        for (var v : byType) {
+            result.append(v.getInfo()).append(System.lineSeparator()).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,742 @@
+import events.EventType;
+import events.Events;
+import exceptions.InvalidOperationException;
+import exceptions.OverloadException;
+import vehicles.OperationStatus;
+import vehicles.Vehicle;
+import vehicles.interfaces.CargoCarrier;
+import vehicles.interfaces.FuelConsumable;
+import vehicles.interfaces.Maintainable;
+import vehicles.interfaces.PassengerCarrier;
+import vehicles.models.*;
+import vehicles.types.AirVehicle;
+import vehicles.types.WaterVehicle;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Fleet storage for very large fleets. Each vehicle is a fixed size record in direct
+// (off-heap) memory instead of a Vehicle object, and its ID is stored there too as UTF-8
+// bytes. Models are interned in a dictionary, since a fleet has few of them, and records
+// refer to them by index. The ID lookup table is an open addressing hash table that is
+// also off-heap. The heap only holds the lists of memory chunks and the model dictionary,
+// so it stays about the same size however many vehicles are stored.
+//
+// Vehicles are read through a VehicleView, a flyweight that is moved from record to
+// record, or copied out as Vehicle objects with getVehicle() and searchByType(). The
+// fleet operations behave like FleetManager's and print the same messages: add, remove,
+// search by type, report, maintain, load and save, sorted by efficiency or not, and the
+// journey, refuel and fuel consumption passes. The passes only change fuel and mileage.
+// Each record keeps the efficiency and maintenance threshold its vehicle had when it was
+// added, which nothing the passes change depends on.
+//
+// A removed vehicle's record is marked and skipped, so removing is constant time and the
+// others keep their places. Once more than half the records are removed, the rest are
+// written again in fleet order without them, as they are when the fleet is sorted.
+// Record numbers change then, so indexOf() is only good until the next remove or sort.
+//
+// Methods are synchronized. Views read the records without locking, so they should not be
+// used while another thread changes the fleet.
+public class OffHeapFleet {
+
+    // Record layout, in native byte order
+    private static final int TYPE = 0;          // byte, see the type tags below
+    private static final int HAS_SAIL = 1;      // byte, 1 for a CargoShip with a sail
+    private static final int ID_LENGTH = 2;     // short, UTF-8 length of the ID
+    private static final int MODEL = 4;         // int, index into the model dictionary
+    private static final int ID_OFFSET = 8;     // long, position of the ID in the ID area
+    private static final int MAX_SPEED = 16;    // double
+    private static final int MILEAGE = 24;      // double
+    private static final int FUEL_LEVEL = 32;   // double
+    private static final int CARGO = 40;        // double
+    private static final int MAX_ALTITUDE = 48; // double
+    private static final int PASSENGERS = 56;   // int
+    private static final int ID_HASH = 60;      // int, hash of the ID bytes
+    private static final int EFFICIENCY = 64;   // double, getFuelEfficiency() when added
+    private static final int THRESHOLD = 72;    // double, getMaintenanceThreshold() when added
+    private static final int SCHEDULED = 80;    // byte, 1 while maintenance is scheduled
+    private static final int RECORD_SIZE = 88;
+
+    // The type of a removed record
+    private static final byte REMOVED = 0;
+    private static final byte CAR = 1;
+    private static final byte BUS = 2;
+    private static final byte TRUCK = 3;
+    private static final byte AIRPLANE = 4;
+    private static final byte CARGO_SHIP = 5;
+
+    // The class of each type tag
+    private static final Class<?>[] CLASSES = {null, Car.class, Bus.class, Truck.class, Airplane.class, CargoShip.class};
+
+    private static final int MAX_ID_LENGTH = 0xFFFF;
+
+    // Memory is allocated in chunks so that no single buffer has to hold the whole fleet
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+    private static final int ID_CHUNK_SIZE = 1 << 22;
+    private static final int INDEX_SLOTS_PER_CHUNK = 1 << 20;
+    private static final int INITIAL_INDEX_SLOTS = 1 << 10;
+
+    private final List<ByteBuffer> records = new ArrayList<>();
+    private final List<ByteBuffer> idArea = new ArrayList<>();
+    // Records written, and how many of them have been removed since
+    private int used;
+    private int removed;
+
+    // Index slots hold a record number plus one, 0 is empty. Kept at most half full.
+    private List<ByteBuffer> index = new ArrayList<>();
+    private int indexSlots;
+
+    private final HashMap<String, Integer> modelIndex = new HashMap<>();
+    private final List<String> models = new ArrayList<>();
+
+    public OffHeapFleet() {
+        reset();
+    }
+
+    public synchronized int size() {
+        return used - removed;
+    }
+
+    // Stores a copy of the vehicle's state. The vehicle itself is not kept.
+    public synchronized void addVehicle(Vehicle v) throws InvalidOperationException {
+        byte[] id = v.getId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_LENGTH) {
+            throw new InvalidOperationException("The vehicle ID is too long");
+        }
+        int hash = hash(id);
+        if (find(id, hash) >= 0) {
+            throw new InvalidOperationException("The vehicle with same ID already exists");
+        }
+        byte type = typeOf(v);
+        if (type == REMOVED) {
+            throw new InvalidOperationException("Unsupported vehicle type: " + v.getClass().getSimpleName());
+        }
+
+        if (used == records.size() * RECORDS_PER_CHUNK) {
+            records.add(allocate(RECORDS_PER_CHUNK * RECORD_SIZE));
+        }
+        int slot = used++;
+        ByteBuffer chunk = chunkOf(slot);
+        int at = offsetOf(slot);
+        chunk.put(at + TYPE, type);
+        chunk.put(at + HAS_SAIL, (byte) (v instanceof WaterVehicle w && w.getHasSail() ? 1 : 0));
+        chunk.putShort(at + ID_LENGTH, (short) id.length);
+        chunk.putInt(at + MODEL, internModel(v.getModel()));
+        chunk.putLong(at + ID_OFFSET, storeId(id));
+        chunk.putDouble(at + MAX_SPEED, v.getMaxSpeed());
+        chunk.putDouble(at + MILEAGE, v.getCurrentMileage());
+        chunk.putDouble(at + FUEL_LEVEL, v instanceof FuelConsumable f ? f.getFuelLevel() : 0);
+        chunk.putDouble(at + CARGO, v instanceof CargoCarrier c ? c.getCurrentCargo() : 0);
+        chunk.putDouble(at + MAX_ALTITUDE, v instanceof AirVehicle a ? a.getMaxAltitude() : 0);
+        chunk.putInt(at + PASSENGERS, v instanceof PassengerCarrier p ? p.getCurrentPassengers() : 0);
+        chunk.putInt(at + ID_HASH, hash);
+        chunk.putDouble(at + EFFICIENCY, v.getFuelEfficiency());
+        // Every type stored here is Maintainable
+        Maintainable m = (Maintainable) v;
+        chunk.putDouble(at + THRESHOLD, m.getMaintenanceThreshold());
+        chunk.put(at + SCHEDULED, (byte) (m.isMaintenanceScheduled() ? 1 : 0));
+
+        if (used - removed > indexSlots / 2) {
+            rebuildIndex(indexSlots * 2);
+        }
+        else {
+            insert(hash, slot);
+        }
+    }
+
+    public synchronized void removeVehicle(String id) throws InvalidOperationException {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        int slot = find(bytes, hash(bytes));
+        if (slot < 0) {
+            throw new InvalidOperationException("Vehicle ID not found.");
+        }
+        delete(slot);
+        chunkOf(slot).put(offsetOf(slot) + TYPE, REMOVED);
+        removed++;
+        if (removed > used / 2) {
+            rewrite(liveSlots());
+        }
+    }
+
+    // Record number of the vehicle with this ID, or -1
+    public synchronized int indexOf(String id) {
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        return find(bytes, hash(bytes));
+    }
+
+    // A new Vehicle with the stored state, or null if there is no vehicle with this ID.
+    // Changes made to it are not written back.
+    public synchronized Vehicle getVehicle(String id) {
+        int slot = indexOf(id);
+        return slot < 0 ? null : view().moveTo(slot).toVehicle();
+    }
+
+    // A flyweight for reading records, see VehicleView.moveTo()
+    public VehicleView view() {
+        return new VehicleView();
+    }
+
+    public synchronized void startAllJourneys(double distance) {
+        VehicleView view = view();
+        for (int i = 0; i < used; i++) {
+            if (isRemoved(i)) {
+                continue;
+            }
+            view.moveTo(i);
+            // Same checks, messages and order as the move() of each model
+            if (distance < 0) {
+                Events.emit(EventType.OPERATION_FAILED, OperationStatus.INVALID_DISTANCE.getMessage());
+                continue;
+            }
+            if (view.burnsFuel()) {
+                double consumedFuel = distance / view.getFuelEfficiency();
+                if (consumedFuel > view.getFuelLevel()) {
+                    Events.emit(EventType.OPERATION_FAILED, view.getId(), insufficientFuel(view.getId()));
+                    continue;
+                }
+                view.chunk.putDouble(view.at + FUEL_LEVEL, view.getFuelLevel() - consumedFuel);
+            }
+            if (Events.isEnabled(EventType.VEHICLE_MOVED)) {
+                Events.emit(EventType.VEHICLE_MOVED, view.getId(), switch (view.type()) {
+                    case CAR -> Car.MOVE_MESSAGE;
+                    case BUS -> Bus.MOVE_MESSAGE;
+                    case TRUCK -> Truck.MOVE_MESSAGE;
+                    case AIRPLANE -> Airplane.moveMessage(view.getMaxAltitude());
+                    default -> CargoShip.MOVE_MESSAGE;
+                });
+            }
+            view.chunk.putDouble(view.at + MILEAGE, view.getCurrentMileage() + distance);
+        }
+        Events.emit(EventType.JOURNEYS_FINISHED, "");
+    }
+
+    public synchronized void refuelAll(double amount) {
+        if (amount <= 0) {
+            // Every vehicle stored here is FuelConsumable, so the first one would refuse
+            if (used > removed) {
+                Events.emit(EventType.OPERATION_FAILED, OperationStatus.INVALID_FUEL_AMOUNT.getMessage());
+                return;
+            }
+        }
+        for (int c = 0; c < records.size(); c++) {
+            ByteBuffer chunk = records.get(c);
+            int count = Math.min(RECORDS_PER_CHUNK, used - c * RECORDS_PER_CHUNK);
+            for (int at = 0; at < count * RECORD_SIZE; at += RECORD_SIZE) {
+                if (chunk.get(at + TYPE) != REMOVED && chunk.get(at + HAS_SAIL) == 0) {
+                    chunk.putDouble(at + FUEL_LEVEL, chunk.getDouble(at + FUEL_LEVEL) + amount);
+                }
+            }
+        }
+        Events.emit(EventType.FLEET_REFUELED, "All vehicles refueled successfully");
+    }
+
+    // Same as FleetManager.getTotalFuelConsumption(), in record order
+    public synchronized double getTotalFuelConsumption(double distance) {
+        double sum = 0;
+        for (int c = 0; c < records.size(); c++) {
+            ByteBuffer chunk = records.get(c);
+            int count = Math.min(RECORDS_PER_CHUNK, used - c * RECORDS_PER_CHUNK);
+            for (int at = 0; at < count * RECORD_SIZE; at += RECORD_SIZE) {
+                if (chunk.get(at + TYPE) == REMOVED || chunk.get(at + HAS_SAIL) != 0) {
+                    continue;
+                }
+                double consumedFuel = distance / efficiency(chunk, at);
+                double fuelLevel = chunk.getDouble(at + FUEL_LEVEL);
+                if (consumedFuel > fuelLevel) {
+                    String id = idAt(chunk, at);
+                    Events.emit(EventType.OPERATION_FAILED, id, insufficientFuel(id));
+                }
+                else {
+                    chunk.putDouble(at + FUEL_LEVEL, fuelLevel - consumedFuel);
+                    sum += consumedFuel;
+                }
+            }
+        }
+        return Math.round(sum * 100.0) / 100.0;
+    }
+
+    // Copies of the vehicles that are instances of type, in fleet order, see getVehicle()
+    public synchronized List<Vehicle> searchByType(Class<?> type) {
+        boolean[] matches = new boolean[CLASSES.length];
+        for (int t = CAR; t < CLASSES.length; t++) {
+            matches[t] = type.isAssignableFrom(CLASSES[t]);
+        }
+        List<Vehicle> found = new ArrayList<>();
+        VehicleView view = view();
+        for (int i = 0; i < used; i++) {
+            if (matches[chunkOf(i).get(offsetOf(i) + TYPE)]) {
+                found.add(view.moveTo(i).toVehicle());
+            }
+        }
+        return found;
+    }
+
+    // Only visits the vehicles that need maintenance, in fleet order, like FleetManager
+    public synchronized void maintainAll() {
+        VehicleView view = view();
+        for (int i = 0; i < used; i++) {
+            if (!isRemoved(i) && view.moveTo(i).needsMaintenance()) {
+                // Scheduled and then performed, which leaves it unscheduled
+                view.chunk.put(view.at + SCHEDULED, (byte) 0);
+                String id = view.getId();
+                Events.emit(EventType.MAINTENANCE_COMPLETED, id, "Maintenance Completed for vehicle ID: " + id);
+            }
+        }
+    }
+
+    // The same report as FleetManager.generateReport(), worked out in one pass
+    public synchronized String generateReport() {
+        int land = 0;
+        int air = 0;
+        int water = 0;
+        double totalMileage = 0;
+        double totalEfficiency = 0;
+        StringBuilder due = new StringBuilder();
+        VehicleView view = view();
+        for (int i = 0; i < used; i++) {
+            if (isRemoved(i)) {
+                continue;
+            }
+            view.moveTo(i);
+            switch (view.type()) {
+                case AIRPLANE -> air++;
+                case CARGO_SHIP -> water++;
+                default -> land++;
+            }
+            totalMileage += view.getCurrentMileage();
+            totalEfficiency += view.getFuelEfficiency();
+            if (view.needsMaintenance()) {
+                due.append(String.format("Vehicle ID %s needs maintenance.%n", view.getId()));
+            }
+        }
+        int count = used - removed;
+        return String.format("Total count of vehicles: %d%nNumber of Land Vehicles: %d%nNumber of Air Vehicles: %d%nNumber of Water Vehicles: %d%nAverage Efficiency: %.2f%nTotal Mileage: %.2f%n", count, land, air, water, totalEfficiency / count, totalMileage) + due;
+    }
+
+    // Puts the records in the order of a stable sort from most to least efficient, the
+    // order FleetManager.sortFleetByEfficiency() gives. Fleets have few distinct
+    // efficiencies, so the records are counted by efficiency and each is put straight in
+    // its place. Only the new order, an int for each vehicle, is kept on the heap.
+    public synchronized void sortFleetByEfficiency() {
+        TreeMap<Double, Integer> places = new TreeMap<>(Comparator.reverseOrder());
+        for (int i = 0; i < used; i++) {
+            if (!isRemoved(i)) {
+                places.merge(efficiency(chunkOf(i), offsetOf(i)), 1, Integer::sum);
+            }
+        }
+        // Turn the counts into the place of the first record with each efficiency
+        int place = 0;
+        for (Map.Entry<Double, Integer> entry : places.entrySet()) {
+            int count = entry.getValue();
+            entry.setValue(place);
+            place += count;
+        }
+        int[] order = new int[used - removed];
+        boolean inOrder = removed == 0;
+        for (int i = 0; i < used; i++) {
+            if (!isRemoved(i)) {
+                double key = efficiency(chunkOf(i), offsetOf(i));
+                int at = places.get(key);
+                places.put(key, at + 1);
+                order[at] = i;
+                inOrder &= at == i;
+            }
+        }
+        if (!inOrder) {
+            rewrite(order);
+        }
+    }
+
+    // Replaces the fleet with the vehicles in a fleet CSV, reporting bad lines like FleetManager
+    public synchronized void loadFromFile(String filename) {
+        try (FleetCsvReader csvReader = new FleetCsvReader(new FileReader(filename))) {
+            clear();
+            ArrayList<Integer> errorLines = new ArrayList<>();
+
+            while (csvReader.nextLine()) {
+                int lineNumber = csvReader.getLineNumber();
+                Vehicle vehicle = csvReader.parseVehicle();
+                if (vehicle != null) {
+                    try {
+                        addVehicle(vehicle);
+                    } catch (InvalidOperationException e) {
+                        Events.emit(EventType.INVALID_RECORD, e.getMessage() + " before line: " + lineNumber);
+                        errorLines.add(lineNumber);
+                    }
+                }
+                else {
+                    Events.emit(EventType.INVALID_RECORD, csvReader.getError());
+                    errorLines.add(lineNumber);
+                }
+            }
+            Events.emit(EventType.FLEET_LOADED, "Fleet loaded successfully from: " + filename);
+            FleetManager.reportErrorLines(errorLines);
+        }
+        catch (IOException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to load fleet from file: " + filename);
+        }
+    }
+
+    public synchronized void saveToFile(String filename) {
+        saveToFile(filename, true);
+    }
+
+    // Sorting by efficiency is optional, as with FleetManager, and puts the fleet in that order
+    public synchronized void saveToFile(String filename, boolean sortByEfficiency) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            try {
+                file.createNewFile();
+                Events.emit(EventType.FLEET_SAVED, "Created file: " + filename);
+            } catch (IOException e) {
+                Events.emit(EventType.IO_ERROR, "Unable to create the file.");
+                return;
+            }
+        }
+        if (sortByEfficiency) {
+            sortFleetByEfficiency();
+        }
+        VehicleView view = view();
+        try (FleetCsvWriter writer = new FleetCsvWriter(filename)) {
+            for (int i = 0; i < used; i++) {
+                if (!isRemoved(i)) {
+                    writer.writeVehicle(view.moveTo(i).toVehicle());
+                }
+            }
+            Events.emit(EventType.FLEET_SAVED, "Successfully added fleet to file: " + filename);
+        }
+        catch (IOException | IllegalStateException e) {
+            Events.emit(EventType.IO_ERROR, "Unable to write to the file: " + filename);
+        }
+    }
+
+    // Drops every vehicle. The direct buffers are freed once they are garbage collected.
+    public synchronized void clear() {
+        reset();
+    }
+
+    private void reset() {
+        records.clear();
+        idArea.clear();
+        used = 0;
+        removed = 0;
+        modelIndex.clear();
+        models.clear();
+        index = allocateIndex(INITIAL_INDEX_SLOTS);
+        indexSlots = INITIAL_INDEX_SLOTS;
+    }
+
+    // Reads the record it was last moved to. One view can be reused for a whole pass, so
+    // reading a fleet of any size allocates nothing but the IDs asked for.
+    public class VehicleView {
+
+        private ByteBuffer chunk;
+        private int at;
+
+        public VehicleView moveTo(int slot) {
+            if (slot < 0 || slot >= used || isRemoved(slot)) {
+                throw new IndexOutOfBoundsException("No vehicle at index: " + slot);
+            }
+            chunk = chunkOf(slot);
+            at = offsetOf(slot);
+            return this;
+        }
+
+        // Simple class name of the vehicle, as used in the fleet CSV
+        public String getType() {
+            return CLASSES[type()].getSimpleName();
+        }
+
+        public String getId() {
+            return idAt(chunk, at);
+        }
+
+        // The interned model, the same String for every vehicle of that model
+        public String getModel() {
+            return models.get(chunk.getInt(at + MODEL));
+        }
+
+        public double getMaxSpeed() {
+            return chunk.getDouble(at + MAX_SPEED);
+        }
+
+        public double getCurrentMileage() {
+            return chunk.getDouble(at + MILEAGE);
+        }
+
+        public double getFuelLevel() {
+            return chunk.getDouble(at + FUEL_LEVEL);
+        }
+
+        public double getCurrentCargo() {
+            return chunk.getDouble(at + CARGO);
+        }
+
+        public int getCurrentPassengers() {
+            return chunk.getInt(at + PASSENGERS);
+        }
+
+        public double getMaxAltitude() {
+            return chunk.getDouble(at + MAX_ALTITUDE);
+        }
+
+        public boolean getHasSail() {
+            return chunk.get(at + HAS_SAIL) != 0;
+        }
+
+        public double getFuelEfficiency() {
+            return efficiency(chunk, at);
+        }
+
+        public double getMaintenanceThreshold() {
+            return chunk.getDouble(at + THRESHOLD);
+        }
+
+        public boolean isMaintenanceScheduled() {
+            return chunk.get(at + SCHEDULED) != 0;
+        }
+
+        // Same test as the models' needsMaintenance()
+        public boolean needsMaintenance() {
+            return getCurrentMileage() > getMaintenanceThreshold();
+        }
+
+        // A new Vehicle with this record's state
+        public Vehicle toVehicle() {
+            String id = getId();
+            String model = getModel();
+            Vehicle v;
+            try {
+                v = switch (type()) {
+                    case CAR -> new Car(id, model, getMaxSpeed(), getCurrentMileage(), getCurrentPassengers(), getFuelLevel());
+                    case BUS -> new Bus(id, model, getMaxSpeed(), getCurrentMileage(), getCurrentPassengers(), getCurrentCargo(), getFuelLevel());
+                    case TRUCK -> new Truck(id, model, getMaxSpeed(), getCurrentMileage(), getCurrentCargo(), getFuelLevel());
+                    case AIRPLANE -> new Airplane(id, model, getMaxSpeed(), getCurrentMileage(), getMaxAltitude(), getCurrentPassengers(), getCurrentCargo(), getFuelLevel());
+                    default -> getHasSail()
+                            ? new CargoShip(id, model, getMaxSpeed(), getCurrentMileage(), true, getCurrentCargo())
+                            : new CargoShip(id, model, getMaxSpeed(), getCurrentMileage(), false, getCurrentCargo(), getFuelLevel());
+                };
+            }
+            catch (OverloadException e) {
+                throw new IllegalStateException("Unable to rebuild vehicle ID: " + id + ": " + e.getMessage());
+            }
+            ((Maintainable) v).setMaintenanceScheduled(isMaintenanceScheduled());
+            return v;
+        }
+
+        private byte type() {
+            return chunk.get(at + TYPE);
+        }
+
+        private boolean burnsFuel() {
+            return !getHasSail();
+        }
+    }
+
+    private static double efficiency(ByteBuffer chunk, int at) {
+        return chunk.getDouble(at + EFFICIENCY);
+    }
+
+    // The message move() fails with when there is not enough fuel, see Vehicle.getMoveFailure()
+    private static String insufficientFuel(String id) {
+        return OperationStatus.INSUFFICIENT_FUEL.getMessage() + " for vehicle ID: " + id;
+    }
+
+    private static byte typeOf(Vehicle v) {
+        return switch (v) {
+            case Car x -> CAR;
+            case Bus x -> BUS;
+            case Truck x -> TRUCK;
+            case Airplane x -> AIRPLANE;
+            case CargoShip x -> CARGO_SHIP;
+            default -> REMOVED;
+        };
+    }
+
+    private boolean isRemoved(int slot) {
+        return chunkOf(slot).get(offsetOf(slot) + TYPE) == REMOVED;
+    }
+
+    // The records not removed, in fleet order
+    private int[] liveSlots() {
+        int[] live = new int[used - removed];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (!isRemoved(i)) {
+                live[count++] = i;
+            }
+        }
+        return live;
+    }
+
+    // Writes the given records again into new chunks, in that order, with their IDs. The
+    // records left out and the IDs of removed vehicles are dropped with the old chunks.
+    private void rewrite(int[] order) {
+        List<ByteBuffer> oldRecords = new ArrayList<>(records);
+        List<ByteBuffer> oldIds = new ArrayList<>(idArea);
+        records.clear();
+        idArea.clear();
+        for (int slot = 0; slot < order.length; slot++) {
+            if (slot == records.size() * RECORDS_PER_CHUNK) {
+                records.add(allocate(RECORDS_PER_CHUNK * RECORD_SIZE));
+            }
+            ByteBuffer from = oldRecords.get(order[slot] / RECORDS_PER_CHUNK);
+            int fromAt = offsetOf(order[slot]);
+            ByteBuffer to = chunkOf(slot);
+            int at = offsetOf(slot);
+            to.put(at, from, fromAt, RECORD_SIZE);
+            to.putLong(at + ID_OFFSET, storeId(idBytes(oldIds, from, fromAt)));
+        }
+        used = order.length;
+        removed = 0;
+        rebuildIndex(indexSlots);
+    }
+
+    private ByteBuffer chunkOf(int slot) {
+        return records.get(slot / RECORDS_PER_CHUNK);
+    }
+
+    private static int offsetOf(int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_SIZE;
+    }
+
+    private int internModel(String model) {
+        Integer i = modelIndex.get(model);
+        if (i == null) {
+            i = models.size();
+            modelIndex.put(model, i);
+            models.add(model);
+        }
+        return i;
+    }
+
+    // IDs never cross a chunk boundary, so an ID is read from a single buffer
+    private long storeId(byte[] id) {
+        ByteBuffer chunk = idArea.isEmpty() ? null : idArea.getLast();
+        if (chunk == null || chunk.remaining() < id.length) {
+            chunk = allocate(ID_CHUNK_SIZE);
+            idArea.add(chunk);
+        }
+        long offset = (long) (idArea.size() - 1) * ID_CHUNK_SIZE + chunk.position();
+        chunk.put(id);
+        return offset;
+    }
+
+    private String idAt(ByteBuffer chunk, int at) {
+        return new String(idBytes(idArea, chunk, at), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] idBytes(List<ByteBuffer> area, ByteBuffer chunk, int at) {
+        long offset = chunk.getLong(at + ID_OFFSET);
+        byte[] bytes = new byte[chunk.getShort(at + ID_LENGTH) & 0xFFFF];
+        area.get((int) (offset / ID_CHUNK_SIZE)).get((int) (offset % ID_CHUNK_SIZE), bytes);
+        return bytes;
+    }
+
+    private boolean idEquals(int slot, byte[] id) {
+        ByteBuffer chunk = chunkOf(slot);
+        int at = offsetOf(slot);
+        if ((chunk.getShort(at + ID_LENGTH) & 0xFFFF) != id.length) {
+            return false;
+        }
+        long offset = chunk.getLong(at + ID_OFFSET);
+        ByteBuffer ids = idArea.get((int) (offset / ID_CHUNK_SIZE));
+        int from = (int) (offset % ID_CHUNK_SIZE);
+        return ids.slice(from, id.length).equals(ByteBuffer.wrap(id));
+    }
+
+    private int find(byte[] id, int hash) {
+        int mask = indexSlots - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int entry = indexGet(i);
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (hashAt(slot) == hash && idEquals(slot, id)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(int hash, int slot) {
+        int mask = indexSlots - 1;
+        int i = hash & mask;
+        while (indexGet(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        indexSet(i, slot + 1);
+    }
+
+    // Takes the record out of the ID table. The entries after it in its run that could
+    // have been put in its place are moved back, so every lookup still ends at an empty slot.
+    private void delete(int slot) {
+        int mask = indexSlots - 1;
+        int hole = hashAt(slot) & mask;
+        while (indexGet(hole) != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; indexGet(i) != 0; i = (i + 1) & mask) {
+            int home = hashAt(indexGet(i) - 1) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                indexSet(hole, indexGet(i));
+                hole = i;
+            }
+        }
+        indexSet(hole, 0);
+    }
+
+    private void rebuildIndex(int slots) {
+        index = allocateIndex(slots);
+        indexSlots = slots;
+        for (int slot = 0; slot < used; slot++) {
+            if (!isRemoved(slot)) {
+                insert(hashAt(slot), slot);
+            }
+        }
+    }
+
+    private int indexGet(int i) {
+        return index.get(i / INDEX_SLOTS_PER_CHUNK).getInt((i % INDEX_SLOTS_PER_CHUNK) * Integer.BYTES);
+    }
+
+    private void indexSet(int i, int entry) {
+        index.get(i / INDEX_SLOTS_PER_CHUNK).putInt((i % INDEX_SLOTS_PER_CHUNK) * Integer.BYTES, entry);
+    }
+
+    private int hashAt(int slot) {
+        return chunkOf(slot).getInt(offsetOf(slot) + ID_HASH);
+    }
+
+    private static List<ByteBuffer> allocateIndex(int slots) {
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int left = slots; left > 0; left -= INDEX_SLOTS_PER_CHUNK) {
+            chunks.add(allocate(Math.min(left, INDEX_SLOTS_PER_CHUNK) * Integer.BYTES));
+        }
+        return chunks;
+    }
+
+    // Direct buffers start zeroed
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    // FNV-1a over the UTF-8 bytes, with the high bits mixed down for the power of two table
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,160 @@
+import vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+// Vehicles ordered by one of their numbers, highest first. A range query takes logarithmic
+// time plus the vehicles it returns, a top-K query the vehicles it passes over until k of
+// them pass its filter. A vehicle that reports a change to its number is only marked, and
+// the marked vehicles are moved in the tree when the index is next queried, so a vehicle
+// that changes many times between queries is moved once. Fleet-wide passes change the
+// number of nearly every vehicle, so instead of marking each one they invalidate the
+// index, and it is built again from the current numbers when it is next queried. Vehicles
+// with the same number are kept in the order they were added.
+//
+// Like EfficiencyOrder it hears about changes from the vehicles' own threads. Marking a
+// vehicle never locks, so vehicles changing at the same time do not wait on each other;
+// everything else locks. The numbers are read with the vehicles' getters, which never lock.
+public class OrderedIndex {
+
+    private record Key(double value, long sequence) {}
+
+    // A vehicle in the index. The key is only used under the lock.
+    private static class Entry {
+        final Vehicle vehicle;
+        Key key;
+        // Set while the entry is waiting in changed
+        final AtomicBoolean marked = new AtomicBoolean();
+
+        Entry(Vehicle vehicle, Key key) {
+            this.vehicle = vehicle;
+            this.key = key;
+        }
+    }
+
+    private final ToDoubleFunction<Vehicle> valueOf;
+    private final TreeMap<Key, Vehicle> order;
+    // Every vehicle in the index. While the index is invalid only the sequence numbers in the keys mean anything.
+    private final ConcurrentHashMap<Vehicle, Entry> entries;
+    // Vehicles whose number has changed since they were last put in the tree
+    private final ConcurrentLinkedQueue<Entry> changed;
+    private long nextSequence;
+    private volatile boolean invalid;
+
+    public OrderedIndex(ToDoubleFunction<Vehicle> valueOf) {
+        this.valueOf = valueOf;
+        order = new TreeMap<>((a, b) -> {
+            int byValue = Double.compare(b.value(), a.value());
+            return byValue != 0 ? byValue : Long.compare(a.sequence(), b.sequence());
+        });
+        entries = new ConcurrentHashMap<>();
+        changed = new ConcurrentLinkedQueue<>();
+    }
+
+    public synchronized void vehicleAdded(Vehicle v) {
+        Key key = new Key(valueOf.applyAsDouble(v), nextSequence++);
+        entries.put(v, new Entry(v, key));
+        if (!invalid) {
+            order.put(key, v);
+        }
+    }
+
+    public synchronized void vehicleRemoved(Vehicle v) {
+        Entry entry = entries.remove(v);
+        if (entry != null && !invalid) {
+            order.remove(entry.key);
+        }
+    }
+
+    public void valueChanged(Vehicle v) {
+        // Nothing to do until the index is built again, which reads the new value anyway
+        if (invalid) {
+            return;
+        }
+        Entry entry = entries.get(v);
+        // A vehicle already marked is moved with its latest value
+        if (entry != null && entry.marked.compareAndSet(false, true)) {
+            changed.add(entry);
+        }
+    }
+
+    public synchronized void invalidate() {
+        invalid = true;
+        order.clear();
+    }
+
+    public synchronized void clear() {
+        order.clear();
+        entries.clear();
+        changed.clear();
+        nextSequence = 0;
+        invalid = false;
+    }
+
+    // The first k vehicles from the highest number down that pass filter
+    public synchronized List<Vehicle> getHighest(int k, Predicate<Vehicle> filter) {
+        update();
+        List<Vehicle> result = new ArrayList<>();
+        for (var v : order.values()) {
+            if (result.size() >= k) {
+                break;
+            }
+            if (filter.test(v)) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    // Vehicles with a number from min to max inclusive, highest first
+    public synchronized List<Vehicle> getRange(double min, double max) {
+        update();
+        if (Double.compare(min, max) > 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(order.subMap(new Key(max, Long.MIN_VALUE), true, new Key(min, Long.MAX_VALUE), true).values());
+    }
+
+    // Brings the tree up to date, holding the lock
+    private void update() {
+        if (invalid) {
+            build();
+            return;
+        }
+        Entry entry;
+        while ((entry = changed.poll()) != null) {
+            // Unmarked before the value is read, so a change made after this is marked again
+            entry.marked.set(false);
+            // Removed from the index since it was marked
+            if (entries.get(entry.vehicle) != entry) {
+                continue;
+            }
+            double value = valueOf.applyAsDouble(entry.vehicle);
+            if (Double.compare(value, entry.key.value()) != 0) {
+                order.remove(entry.key);
+                entry.key = new Key(value, entry.key.sequence());
+                order.put(entry.key, entry.vehicle);
+            }
+        }
+    }
+
+    private void build() {
+        // Marked valid before any value is read: a change reported before this point is
+        // read below, one reported after it is marked and applied by the next query
+        invalid = false;
+        Entry marked;
+        while ((marked = changed.poll()) != null) {
+            marked.marked.set(false);
+        }
+        for (var entry : entries.values()) {
+            entry.key = new Key(valueOf.applyAsDouble(entry.vehicle), entry.key.sequence());
+            order.put(entry.key, entry.vehicle);
+        }
+    }
+}
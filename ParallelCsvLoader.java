@@ -0,0 +1,195 @@
+import vehicles.Vehicle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Parses a fleet CSV file on several threads. The file is memory mapped and cut into
+// chunks that each end on a newline. Lines are counted in every chunk first so each
+// chunk knows its starting line number, then the chunks are parsed in parallel.
+public class ParallelCsvLoader {
+
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    // The parsed lines of one chunk. For each line either the vehicle or the error is set.
+    public static class Chunk {
+
+        private final int firstLine;
+        private final Vehicle[] vehicles;
+        private final String[] errors;
+
+        Chunk(int firstLine, int lines) {
+            this.firstLine = firstLine;
+            this.vehicles = new Vehicle[lines];
+            this.errors = new String[lines];
+        }
+
+        public int getFirstLine() {
+            return firstLine;
+        }
+
+        public int getLineCount() {
+            return vehicles.length;
+        }
+
+        public Vehicle getVehicle(int line) {
+            return vehicles[line];
+        }
+
+        public String getError(int line) {
+            return errors[line];
+        }
+    }
+
+    // Returns the chunks in file order
+    public static List<Chunk> parse(String filename, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            int chunkCount = bounds.length - 1;
+
+            List<Callable<Integer>> counters = new ArrayList<>();
+            for (int i = 0; i < chunkCount; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                counters.add(() -> countLines(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start)));
+            }
+            List<Integer> lineCounts = getAll(pool.invokeAll(counters));
+
+            List<Callable<Chunk>> parsers = new ArrayList<>();
+            int firstLine = 1;
+            for (int i = 0; i < chunkCount; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                Chunk chunk = new Chunk(firstLine, lineCounts.get(i));
+                parsers.add(() -> parseChunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), chunk));
+                firstLine += lineCounts.get(i);
+            }
+            return getAll(pool.invokeAll(parsers));
+        }
+    }
+
+    // Chunk boundaries as file offsets. Every boundary except the last sits just after a '\n'.
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+
+        ByteBuffer window = ByteBuffer.allocate(4096);
+        long position = CHUNK_SIZE;
+        while (position < size) {
+            long boundary = -1;
+            while (boundary < 0 && position < size) {
+                window.clear();
+                int read = channel.read(window, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        boundary = position + i + 1;
+                        break;
+                    }
+                }
+                if (boundary < 0) {
+                    position += read;
+                }
+            }
+            if (boundary < 0 || boundary >= size) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary + CHUNK_SIZE;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Counts lines the same way FleetCsvReader.nextLine() splits them
+    private static int countLines(MappedByteBuffer bytes) {
+        int limit = bytes.limit();
+        int lines = 0;
+        boolean midLine = false;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes.get(i);
+            if (b == '\n') {
+                lines++;
+                midLine = false;
+            }
+            else if (b == '\r') {
+                if (i + 1 == limit || bytes.get(i + 1) != '\n') {
+                    lines++;
+                }
+                midLine = false;
+            }
+            else {
+                midLine = true;
+            }
+        }
+        return midLine ? lines + 1 : lines;
+    }
+
+    private static Chunk parseChunk(MappedByteBuffer bytes, Chunk chunk) throws IOException {
+        CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer decoded = decoder.decode(bytes);
+        char[] chars = decoded.array();
+        int end = decoded.arrayOffset() + decoded.limit();
+
+        FleetCsvReader parser = new FleetCsvReader(null);
+        int line = 0;
+        int lineStart = decoded.arrayOffset() + decoded.position();
+        int i = lineStart;
+        while (line < chunk.getLineCount()) {
+            if (i == end || chars[i] == '\n' || chars[i] == '\r') {
+                chunk.vehicles[line] = parser.parse(chars, lineStart, i, chunk.firstLine + line);
+                chunk.errors[line] = parser.getError();
+                line++;
+                if (i < end - 1 && chars[i] == '\r' && chars[i + 1] == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
+            i++;
+        }
+        return chunk;
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (var future : futures) {
+                results.add(future.get());
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return results;
+    }
+}
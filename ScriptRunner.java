@@ -0,0 +1,212 @@
+import events.CapturingEventSink;
+import events.EventLevel;
+import events.EventSink;
+import events.Events;
+import events.FleetEvent;
+import exceptions.InvalidOperationException;
+import exceptions.OverloadException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs a file of MenuCommand lines against a fleet with no prompts, for regression and
+// load testing.
+//
+//   java ScriptRunner [-c] [-l level] [-r repeat] [-o output] script
+//
+// -c:  use a columnar fleet, see FleetManager(boolean)
+// -l:  the event level, e.g. WARNING to leave out the vehicles' moves (default DEBUG)
+// -r:  run the script this many times over on the same fleet (default 1)
+// -o:  write the results to this file instead of the console
+//
+// Blank lines and lines starting with # are skipped. The whole script is parsed before the
+// first command runs, so the timings are of the fleet's work only. Every command that
+// runs gives one tab separated line:
+//
+//   line  command  status  nanoseconds  output
+//
+// status is ok, warning if the fleet raised a warning or an error while the command ran,
+// failed if the fleet rejected it, or invalid if the line is not a command, in which case
+// it was not run. output is what the command printed followed by the events it raised, with
+// backslashes, tabs and line breaks written as \\, \t and \n. A summary follows as lines
+// starting with #.
+public class ScriptRunner {
+
+    private record Line(int number, MenuCommand command) {}
+
+    private final FleetManager fleet;
+    private final List<Line> lines;
+    private long parseNanos;
+
+    // The output of the command that is running, which its events are added to
+    private final StringBuilder output;
+    private boolean warned;
+
+    private long ok;
+    private long warnings;
+    private long failed;
+    private long invalid;
+    private long runNanos;
+
+    public ScriptRunner(FleetManager fleet) {
+        this.fleet = fleet;
+        lines = new ArrayList<>();
+        output = new StringBuilder();
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean columnar = false;
+        int repeat = 1;
+        String outputFile = null;
+        String script = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-c" -> columnar = true;
+                case "-l" -> Events.setLevel(EventLevel.valueOf(args[++i].toUpperCase()));
+                case "-r" -> repeat = Integer.parseInt(args[++i]);
+                case "-o" -> outputFile = args[++i];
+                default -> script = args[i];
+            }
+        }
+        if (script == null) {
+            System.out.println("Please enter the script file name");
+            return;
+        }
+
+        ScriptRunner runner = new ScriptRunner(new FleetManager(columnar));
+        runner.load(script);
+        try (Writer out = new BufferedWriter(outputFile == null
+                ? new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)
+                : new FileWriter(outputFile, StandardCharsets.UTF_8), 1 << 16)) {
+            runner.run(out, repeat);
+        }
+    }
+
+    // Parses every command in the file, adding them to the ones already loaded
+    public void load(String filename) throws IOException {
+        long start = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    lines.add(new Line(number, MenuCommand.parse(trimmed)));
+                }
+            }
+        }
+        parseNanos += System.nanoTime() - start;
+    }
+
+    public int getCommandCount() {
+        return lines.size();
+    }
+
+    // Runs the loaded commands repeat times over, writing a line for each and then the summary
+    public void run(Writer out, int repeat) throws IOException {
+        EventSink previousSink = Events.getSink();
+        CapturingEventSink events = new CapturingEventSink(previousSink);
+        Events.setSink(events);
+        events.capture(this::record);
+        StringBuilder row = new StringBuilder();
+        try {
+            for (int i = 0; i < repeat; i++) {
+                for (var line : lines) {
+                    row.setLength(0);
+                    row.append(line.number()).append('\t');
+                    escape(row, line.command().toString());
+                    row.append('\t').append(runCommand(line.command())).append('\t');
+                    escape(row, output);
+                    row.append('\n');
+                    out.append(row);
+                }
+            }
+        }
+        finally {
+            events.release();
+            if (Events.getSink() == events) {
+                Events.setSink(previousSink);
+            }
+        }
+
+        out.write("# commands " + (ok + warnings + failed + invalid) + "\n");
+        out.write("# ok " + ok + "\n");
+        out.write("# warning " + warnings + "\n");
+        out.write("# failed " + failed + "\n");
+        out.write("# invalid " + invalid + "\n");
+        out.write("# parse nanoseconds " + parseNanos + "\n");
+        out.write("# run nanoseconds " + runNanos + "\n");
+        out.flush();
+    }
+
+    // Runs command, leaving what it printed in output, and returns its status and time
+    private String runCommand(MenuCommand command) {
+        output.setLength(0);
+        warned = false;
+        if (!command.isValid()) {
+            invalid++;
+            output.append(command.getError());
+            return "invalid\t0";
+        }
+
+        String status;
+        String printed;
+        long start = System.nanoTime();
+        try {
+            printed = command.run(fleet);
+            status = warned ? "warning" : "ok";
+        }
+        catch (InvalidOperationException | OverloadException e) {
+            printed = e.getMessage();
+            status = "failed";
+        }
+        long nanos = System.nanoTime() - start;
+        runNanos += nanos;
+
+        // Events were added as they happened, what the command printed goes first
+        output.insert(0, printed.isEmpty() || output.isEmpty() ? printed : printed + "\n");
+        switch (status) {
+            case "ok" -> ok++;
+            case "warning" -> warnings++;
+            default -> failed++;
+        }
+        return status + "\t" + nanos;
+    }
+
+    private void record(FleetEvent event) {
+        if (!output.isEmpty()) {
+            output.append('\n');
+        }
+        output.append(event.message());
+        if (event.level().compareTo(EventLevel.WARNING) >= 0) {
+            warned = true;
+        }
+    }
+
+    private static void escape(StringBuilder to, CharSequence text) {
+        int length = text.length();
+        // Trailing line breaks tell nothing apart and would only clutter the column
+        while (length > 0 && (text.charAt(length - 1) == '\n' || text.charAt(length - 1) == '\r')) {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> to.append("\\\\");
+                case '\t' -> to.append("\\t");
+                case '\n' -> to.append("\\n");
+                case '\r' -> {
+                    if (i + 1 < length && text.charAt(i + 1) == '\n') {
+                        continue;
+                    }
+                    to.append("\\n");
+                }
+                default -> to.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Outcome of a fleet simulation: how many events were handled, what the vehicles did, and
+// why any of them could not carry on with their plans
+public class SimulationResult {
+
+    private long events;
+    private long departures;
+    private long arrivals;
+    private long refuelStops;
+    private long maintenanceStops;
+    private int finishedPlans;
+    private double distance;
+    private double fuelAdded;
+    private LinkedHashMap<String, String> stranded;
+
+    public SimulationResult() {
+        stranded = new LinkedHashMap<>();
+    }
+
+    public void addEvent() {
+        events++;
+    }
+
+    public void addDeparture(double distance) {
+        departures++;
+        this.distance += distance;
+    }
+
+    public void addArrival() {
+        arrivals++;
+    }
+
+    public void addRefuelStop(double amount) {
+        refuelStops++;
+        fuelAdded += amount;
+    }
+
+    public void addMaintenanceStop() {
+        maintenanceStops++;
+    }
+
+    public void addFinishedPlan() {
+        finishedPlans++;
+    }
+
+    public void addStranded(String id, String message) {
+        stranded.put(id, message);
+    }
+
+    // Adds another share of the same simulation, e.g. from another shard
+    public void add(SimulationResult other) {
+        events += other.events;
+        departures += other.departures;
+        arrivals += other.arrivals;
+        refuelStops += other.refuelStops;
+        maintenanceStops += other.maintenanceStops;
+        finishedPlans += other.finishedPlans;
+        distance += other.distance;
+        fuelAdded += other.fuelAdded;
+        stranded.putAll(other.stranded);
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getDepartures() {
+        return departures;
+    }
+
+    public long getArrivals() {
+        return arrivals;
+    }
+
+    public long getRefuelStops() {
+        return refuelStops;
+    }
+
+    public long getMaintenanceStops() {
+        return maintenanceStops;
+    }
+
+    public int getFinishedPlans() {
+        return finishedPlans;
+    }
+
+    // Distance of the legs started, including those still under way when the simulation ended
+    public double getDistance() {
+        return distance;
+    }
+
+    public double getFuelAdded() {
+        return fuelAdded;
+    }
+
+    public int getStranded() {
+        return stranded.size();
+    }
+
+    // Why each stranded vehicle stopped, keyed by vehicle ID, in fleet order
+    public Map<String, String> getStrandedVehicles() {
+        return Collections.unmodifiableMap(stranded);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format(
+                "Events handled: %d%nDepartures: %d%nArrivals: %d%nRefuel stops: %d%nMaintenance stops: %d%n"
+                        + "Plans finished: %d%nDistance travelled: %.2f%nFuel added: %.2f%nVehicles stranded: %d%n",
+                events, departures, arrivals, refuelStops, maintenanceStops, finishedPlans, distance, fuelAdded, stranded.size()));
+        for (var message : stranded.values()) {
+            result.append(message).append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+}
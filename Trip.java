@@ -0,0 +1,13 @@
+// A trip to be given to a vehicle by FleetManager.planDispatch(): how far it goes and how
+// many passengers and how much cargo it takes
+public record Trip(double distance, int passengers, double cargo) {
+
+    public Trip {
+        if (!(distance >= 0) || Double.isInfinite(distance)) {
+            throw new IllegalArgumentException("Trip distance must be finite and not negative");
+        }
+        if (passengers < 0 || !(cargo >= 0) || Double.isInfinite(cargo)) {
+            throw new IllegalArgumentException("Trip passengers and cargo cannot be negative");
+        }
+    }
+}
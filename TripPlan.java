@@ -0,0 +1,69 @@
+// The trips a vehicle makes in a simulation. It leaves at the departure time, drives each
+// leg in turn and stops for the given number of hours after each one. A repeating plan goes
+// back to the first leg after the last stop. Plans hold no state, so one plan can be given
+// to any number of vehicles.
+public class TripPlan {
+
+    private final double departure;
+    private final double[] distances;
+    private final double[] stops;
+    private final boolean repeating;
+    private final double totalDistance;
+
+    public TripPlan(double departure, double[] distances, double[] stops, boolean repeating) {
+        if (!Double.isFinite(departure)) {
+            throw new IllegalArgumentException("A trip plan needs a departure time");
+        }
+        if (distances.length == 0 || distances.length != stops.length) {
+            throw new IllegalArgumentException("A trip plan needs at least one leg and a stop after each leg");
+        }
+        double totalDistance = 0;
+        double totalStops = 0;
+        for (int i = 0; i < distances.length; i++) {
+            if (!(distances[i] >= 0) || !(stops[i] >= 0) || Double.isInfinite(distances[i]) || Double.isInfinite(stops[i])) {
+                throw new IllegalArgumentException("Trip plan distances and stops must be finite and not negative");
+            }
+            totalDistance += distances[i];
+            totalStops += stops[i];
+        }
+        // Otherwise the plan would go round forever without the clock moving
+        if (repeating && totalDistance == 0 && totalStops == 0) {
+            throw new IllegalArgumentException("A repeating trip plan needs a leg or a stop of some length");
+        }
+        this.departure = departure;
+        this.distances = distances.clone();
+        this.stops = stops.clone();
+        this.repeating = repeating;
+        this.totalDistance = totalDistance;
+    }
+
+    // A single leg driven over and over, with a stop after each
+    public static TripPlan shuttle(double departure, double distance, double stop) {
+        return new TripPlan(departure, new double[] {distance}, new double[] {stop}, true);
+    }
+
+    public double getDeparture() {
+        return departure;
+    }
+
+    public int getLegCount() {
+        return distances.length;
+    }
+
+    public double getDistance(int leg) {
+        return distances[leg];
+    }
+
+    public double getStop(int leg) {
+        return stops[leg];
+    }
+
+    public boolean isRepeating() {
+        return repeating;
+    }
+
+    // The distance of all the legs once through
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+}
@@ -0,0 +1,175 @@
+package events;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Hands events to another sink on a background thread, so that publishing one only means
+// putting it in a ring buffer. The drainer takes everything in the buffer at once and
+// passes it on outside the lock, so a slow sink such as the console holds up nobody else.
+//
+// When the buffer is full, publish() either waits for the drainer to make room or, if the
+// sink drops when full, throws the event away and counts it.
+public class AsyncEventSink implements EventSink {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private final EventSink target;
+    private final boolean dropWhenFull;
+    private final FleetEvent[] buffer;
+    private final int mask;
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private final Condition delivered;
+
+    // Counts of events since the start: put in the buffer, taken out by the drainer, and
+    // passed on. The events in the buffer are those from head to tail.
+    private long tail;
+    private long head;
+    private long deliveredCount;
+    private long dropped;
+    private boolean closed;
+
+    private final Thread drainer;
+
+    public AsyncEventSink(EventSink target) {
+        this(target, DEFAULT_CAPACITY, false);
+    }
+
+    // capacity is rounded up to a power of two
+    public AsyncEventSink(EventSink target, int capacity, boolean dropWhenFull) {
+        this.target = target;
+        this.dropWhenFull = dropWhenFull;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        buffer = new FleetEvent[size];
+        mask = size - 1;
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+        delivered = lock.newCondition();
+        drainer = new Thread(this::drain, "fleet-events");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void publish(FleetEvent event) {
+        lock.lock();
+        try {
+            while (tail - head == buffer.length && !closed) {
+                if (dropWhenFull) {
+                    dropped++;
+                    return;
+                }
+                notFull.awaitUninterruptibly();
+            }
+            if (closed) {
+                // Nothing will drain the buffer any more, so hand the event straight on
+                target.publish(event);
+                return;
+            }
+            buffer[(int) (tail & mask)] = event;
+            tail++;
+            if (tail - head == 1) {
+                notEmpty.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long published = tail;
+            while (deliveredCount < published && drainer.isAlive()) {
+                delivered.awaitUninterruptibly();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        target.flush();
+    }
+
+    // Passes on what is left in the buffer, stops the drainer and closes the target
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+            notFull.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        try {
+            drainer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    // Events thrown away because the buffer was full
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        FleetEvent[] batch = new FleetEvent[buffer.length];
+        while (true) {
+            int count = 0;
+            lock.lock();
+            try {
+                while (head == tail && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (head == tail) {
+                    delivered.signalAll();
+                    return;
+                }
+                while (head < tail) {
+                    int slot = (int) (head & mask);
+                    batch[count++] = buffer[slot];
+                    buffer[slot] = null;
+                    head++;
+                }
+                notFull.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+
+            for (int i = 0; i < count; i++) {
+                try {
+                    target.publish(batch[i]);
+                }
+                catch (RuntimeException e) {
+                    // One bad event must not stop the rest from being passed on
+                }
+                batch[i] = null;
+            }
+
+            lock.lock();
+            try {
+                deliveredCount += count;
+                delivered.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package events;
+
+// Lets a thread keep the events it publishes for itself, e.g. to send them back to the
+// client it is working for. Events published on any other thread go to the fallback sink.
+public class CapturingEventSink implements EventSink {
+
+    private final EventSink fallback;
+    private final ThreadLocal<EventSink> captures;
+
+    public CapturingEventSink(EventSink fallback) {
+        this.fallback = fallback;
+        captures = new ThreadLocal<>();
+    }
+
+    public EventSink getFallback() {
+        return fallback;
+    }
+
+    // Sends the events this thread publishes to sink until release()
+    public void capture(EventSink sink) {
+        captures.set(sink);
+    }
+
+    public void release() {
+        captures.remove();
+    }
+
+    @Override
+    public void publish(FleetEvent event) {
+        EventSink capture = captures.get();
+        if (capture != null) {
+            capture.publish(event);
+        }
+        else {
+            fallback.publish(event);
+        }
+    }
+
+    @Override
+    public void flush() {
+        fallback.flush();
+    }
+}
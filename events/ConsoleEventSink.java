@@ -0,0 +1,11 @@
+package events;
+
+// Prints each event's message on System.out as it is published, which is what the fleet
+// did before it had events. System.out is looked up each time, so redirecting it still works.
+public class ConsoleEventSink implements EventSink {
+
+    @Override
+    public void publish(FleetEvent event) {
+        System.out.println(event.message());
+    }
+}
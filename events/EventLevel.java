@@ -0,0 +1,9 @@
+package events;
+
+// How much an event matters, lowest first. Events below the level set with Events.setLevel() are not emitted.
+public enum EventLevel {
+    DEBUG,
+    INFO,
+    WARNING,
+    ERROR
+}
@@ -0,0 +1,14 @@
+package events;
+
+// Where emitted events go, see Events.setSink(). publish() may be called from any thread.
+public interface EventSink {
+
+    void publish(FleetEvent event);
+
+    // Returns once every event published before the call has been handled
+    default void flush() {
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,28 @@
+package events;
+
+// What an event reports, and the level it is emitted at
+public enum EventType {
+    // A vehicle describing how it moves, once per vehicle per journey
+    VEHICLE_MOVED(EventLevel.DEBUG),
+    JOURNEYS_FINISHED(EventLevel.DEBUG),
+    OPERATION_FAILED(EventLevel.WARNING),
+    FLEET_REFUELED(EventLevel.INFO),
+    MAINTENANCE_COMPLETED(EventLevel.INFO),
+    MAINTENANCE_NOT_NEEDED(EventLevel.INFO),
+    FLEET_LOADED(EventLevel.INFO),
+    FLEET_SAVED(EventLevel.INFO),
+    // A line or record that could not be turned into a vehicle
+    INVALID_RECORD(EventLevel.WARNING),
+    JOURNAL_OPENED(EventLevel.INFO),
+    IO_ERROR(EventLevel.ERROR);
+
+    private final EventLevel level;
+
+    EventType(EventLevel level) {
+        this.level = level;
+    }
+
+    public EventLevel getLevel() {
+        return level;
+    }
+}
@@ -0,0 +1,48 @@
+package events;
+
+// Where the fleet and its vehicles emit their events. By default every event is printed on
+// the console as it happens. Setting an AsyncEventSink takes the printing off the threads
+// doing the work, and raising the level stops the events below it from being made at all.
+public class Events {
+
+    private static volatile EventSink sink = new ConsoleEventSink();
+    private static volatile EventLevel level = EventLevel.DEBUG;
+
+    private Events() {
+    }
+
+    public static EventSink getSink() {
+        return sink;
+    }
+
+    public static void setSink(EventSink newSink) {
+        sink = newSink;
+    }
+
+    public static EventLevel getLevel() {
+        return level;
+    }
+
+    public static void setLevel(EventLevel newLevel) {
+        level = newLevel;
+    }
+
+    // Callers check this before putting a message together on a hot path
+    public static boolean isEnabled(EventType type) {
+        return type.getLevel().compareTo(level) >= 0;
+    }
+
+    public static void emit(EventType type, String message) {
+        emit(type, null, message);
+    }
+
+    public static void emit(EventType type, String vehicleId, String message) {
+        if (isEnabled(type)) {
+            sink.publish(new FleetEvent(type, vehicleId, message));
+        }
+    }
+
+    public static void flush() {
+        sink.flush();
+    }
+}
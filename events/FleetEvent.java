@@ -0,0 +1,9 @@
+package events;
+
+// Something the fleet or one of its vehicles reports. vehicleId is null for events about the whole fleet.
+public record FleetEvent(EventType type, String vehicleId, String message) {
+
+    public EventLevel level() {
+        return type.getLevel();
+    }
+}
@@ -0,0 +1,82 @@
+import vehicles.Vehicle;
+import vehicles.interfaces.CargoCarrier;
+import vehicles.models.Airplane;
+import vehicles.models.Truck;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+// Checks that a load plan leaves no consignment unplaced that would still fit on one of the
+// vehicles, in the room left after everything placed, and that no vehicle takes more than
+// its spare capacity.
+//
+// Build and run from the project root:
+//   javac -d out $(find . -name "*.java") && java -cp out CargoPackerTest
+public class CargoPackerTest {
+    // Slack for the rounding of sums of weights
+    private static final double EPSILON = 1e-6;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        for (int seed = 0; seed < 2000; seed++) {
+            run(seed);
+        }
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All packing checks passed");
+    }
+
+    private static void run(int seed) throws Exception {
+        Random random = new Random(seed);
+        FleetManager manager = new FleetManager();
+        int count = 2 + random.nextInt(30);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(8) == 0) {
+                manager.addVehicle(new Airplane("A" + i, "Test", 800, 0, 10000, 0, random.nextInt(10000)));
+            }
+            else {
+                manager.addVehicle(new Truck("T" + i, "Test", 100, 0, random.nextInt(5000)));
+            }
+        }
+        // Mostly more weight than the fleet can take, of parcels up to most of a truck. The
+        // improvement passes empty some vehicles, which leaves room for the big ones first
+        // fit could not place.
+        double[] consignments = new double[count * (2 + random.nextInt(6))];
+        for (int i = 0; i < consignments.length; i++) {
+            consignments[i] = 1 + random.nextInt(random.nextBoolean() ? 3000 : 800);
+        }
+        LoadPlan plan = manager.planLoading(consignments, ForkJoinPool.commonPool());
+
+        Map<Vehicle, Double> taken = new HashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            Vehicle v = plan.getVehicle(i);
+            if (v != null) {
+                taken.merge(v, plan.getWeight(i), Double::sum);
+            }
+        }
+        double roomiest = 0;
+        for (var v : manager.searchByType(Vehicle.class)) {
+            if (v instanceof CargoCarrier c) {
+                double room = c.getCargoCapacity() - c.getCurrentCargo() - taken.getOrDefault(v, 0.0);
+                check("seed " + seed + ": " + v.getId() + " takes no more than its room", room >= -EPSILON);
+                roomiest = Math.max(roomiest, room);
+            }
+        }
+        for (int i : plan.getUnplaced()) {
+            check("seed " + seed + ": consignment " + i + " of " + plan.getWeight(i) + " does not fit in " + roomiest,
+                    plan.getWeight(i) > roomiest - EPSILON);
+        }
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + name);
+        }
+    }
+}
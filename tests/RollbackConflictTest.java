@@ -0,0 +1,107 @@
+import events.EventLevel;
+import events.EventSink;
+import events.EventType;
+import events.Events;
+import vehicles.models.Bus;
+import vehicles.models.Car;
+import vehicles.models.Truck;
+
+import java.util.List;
+
+// Checks that an aborted atomic batch never writes back an invalid state when
+// another caller changed one of its vehicles while the batch was running.
+// The interleaving is forced by running the other caller's change from the
+// event sink while the batch moves vehicle "X", before it reaches the unknown
+// vehicle that aborts it.
+//
+// Build and run from the project root:
+//   javac -d out $(find . -name "*.java") && java -cp out RollbackConflictTest
+public class RollbackConflictTest {
+    private static Runnable interleaved;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        EventSink previous = Events.getSink();
+        Events.setLevel(EventLevel.DEBUG);
+        Events.setSink(e -> {
+            if (e.type() == EventType.VEHICLE_MOVED && "X".equals(e.vehicleId()) && interleaved != null) {
+                Runnable change = interleaved;
+                interleaved = null;
+                change.run();
+            }
+        });
+        try {
+            run(false);
+            run(true);
+        } finally {
+            Events.setSink(previous);
+            Events.setLevel(EventLevel.INFO);
+        }
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All rollback checks passed");
+    }
+
+    private static void run(boolean columnar) throws Exception {
+        FleetManager manager = new FleetManager(columnar);
+        Truck truck = new Truck("T", "Test", 90, 100, 6, 50);
+        Bus bus = new Bus("B", "Test", 80, 100, 3, 0, 50);
+        Car other = new Car("X", "Test", 100, 0, 0, 1000);
+        manager.addVehicle(truck);
+        manager.addVehicle(bus);
+        manager.addVehicle(other);
+        String mode = columnar ? "columnar" : "objects";
+
+        // The batch loads 100, another caller unloads 100, the batch aborts
+        interleaved = () -> truck.tryUnloadCargo(100);
+        BatchResult result = abortingBatch(manager, FleetCommand.loadCargo("T", 100));
+        check(mode + ": cargo stays non-negative", truck.getCurrentCargo() >= 0);
+        check(mode + ": cargo conflict reported", result.getStatus(0) == CommandStatus.ROLLBACK_CONFLICT);
+
+        // The batch boards 4, another caller disembarks 5
+        interleaved = () -> bus.tryDisembarkPassengers(5);
+        result = abortingBatch(manager, FleetCommand.boardPassengers("B", 4));
+        check(mode + ": passengers stay non-negative", bus.getCurrentPassengers() >= 0);
+        check(mode + ": passenger conflict reported", result.getRollbackConflicts() == 1);
+
+        // The batch refuels, another caller burns more than the tank held before
+        double fuel = truck.getFuelLevel();
+        interleaved = () -> truck.tryMove((fuel + 90) * truck.getFuelEfficiency());
+        result = abortingBatch(manager, FleetCommand.refuel("T", 100));
+        check(mode + ": fuel stays non-negative", truck.getFuelLevel() >= 0);
+        check(mode + ": fuel conflict reported", result.getRollbackConflicts() == 1);
+
+        // The batch unloads everything, another caller fills the truck up
+        interleaved = () -> truck.tryLoadCargo(truck.getCargoCapacity() - truck.getCurrentCargo());
+        result = abortingBatch(manager, FleetCommand.unloadCargo("T", truck.getCurrentCargo()));
+        check(mode + ": cargo stays within capacity", truck.getCurrentCargo() <= truck.getCargoCapacity());
+        check(mode + ": capacity conflict reported", result.getRollbackConflicts() == 1);
+
+        // Nothing interferes: the batch is undone exactly
+        String before = state(truck, bus);
+        result = manager.execute(List.of(FleetCommand.loadCargo("T", 0.1), FleetCommand.refuel("T", 0.3),
+                FleetCommand.move("T", 0.7), FleetCommand.boardPassengers("B", 1), FleetCommand.move("missing", 1)), true);
+        check(mode + ": undone exactly", before.equals(state(truck, bus)));
+        check(mode + ": no conflict without interference", result.isAborted() && result.getRollbackConflicts() == 0);
+    }
+
+    // The command under test, then a move of "X" that runs the interleaved
+    // change, then a command for an unknown vehicle that aborts the batch
+    private static BatchResult abortingBatch(FleetManager manager, FleetCommand command) {
+        return manager.execute(List.of(command, FleetCommand.move("X", 1), FleetCommand.move("missing", 1)), true);
+    }
+
+    private static String state(Truck truck, Bus bus) {
+        return truck.getCurrentCargo() + " " + truck.getFuelLevel() + " " + truck.getCurrentMileage()
+                + " " + bus.getCurrentPassengers();
+    }
+
+    private static void check(String name, boolean passed) {
+        if (!passed) {
+            failures++;
+            System.out.println("FAILED: " + name);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package vehicles;
+
+import vehicles.interfaces.FuelConsumable;
+import vehicles.types.WaterVehicle;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Column store for the changing numbers of a fleet's vehicles. While a vehicle is attached,
+// its mileage, fuel level, cargo and passengers live in primitive arrays at the vehicle's
+// slot along with its fuel efficiency, and the vehicle reads and writes them there. Passes
+// over the whole fleet can then run down the arrays instead of calling into each vehicle.
+//
+// Slots are handed out in the order vehicles are attached, so slot order is fleet order.
+// A detached vehicle leaves a hole. When the arrays are full or mostly holes, or the fleet
+// is reordered, the vehicles are moved to a new Table one at a time, each while holding
+// its lock so that no change to it is lost.
+//
+// Attaching, detaching and reordering must not run at the same time as each other or as
+// the passes, which FleetManager ensures with its fleet lock. Vehicles may be changed
+// from any thread at any time, and change their fuel level atomically so that the passes
+// can too.
+public class FleetColumns {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final VarHandle FUEL = MethodHandles.arrayElementVarHandle(double[].class);
+
+    // Kinds of slot. Holes are 0.
+    static final byte ATTACHED = 1;
+    static final byte FUEL_CONSUMABLE = 2;
+    static final byte BURNS_FUEL = 4;
+
+    // One set of columns. A slot of a table is never given to a second vehicle, which is
+    // what lets a vehicle read its values without taking its lock, see Vehicle.slotIn().
+    static final class Table {
+
+        final Vehicle[] owners;
+        final byte[] kinds;
+        final double[] currentMileage;
+        final double[] fuelLevel;
+        final double[] currentCargo;
+        final int[] currentPassengers;
+        final double[] efficiency;
+
+        Table(int capacity) {
+            owners = new Vehicle[capacity];
+            kinds = new byte[capacity];
+            currentMileage = new double[capacity];
+            fuelLevel = new double[capacity];
+            currentCargo = new double[capacity];
+            currentPassengers = new int[capacity];
+            efficiency = new double[capacity];
+        }
+
+        void copySlot(int from, Table to, int slot) {
+            to.kinds[slot] = kinds[from];
+            to.currentMileage[slot] = currentMileage[from];
+            to.fuelLevel[slot] = fuelLevel[from];
+            to.currentCargo[slot] = currentCargo[from];
+            to.currentPassengers[slot] = currentPassengers[from];
+            to.efficiency[slot] = efficiency[from];
+        }
+    }
+
+    private Table table;
+    // Slots handed out in the current table, holes included
+    private int used;
+    private int holes;
+
+    public FleetColumns() {
+        table = new Table(INITIAL_CAPACITY);
+    }
+
+    public static boolean isAttached(Vehicle v) {
+        return v.getTable() != null;
+    }
+
+    public int size() {
+        return used - holes;
+    }
+
+    public void attach(Vehicle v) {
+        if (used == table.owners.length) {
+            moveTo(new Table(Math.max(INITIAL_CAPACITY, size() * 2)), liveVehicles());
+        }
+        int s = used++;
+        synchronized (v) {
+            if (v.getTable() != null) {
+                throw new IllegalStateException("Vehicle is already attached to a column store: " + v.getId());
+            }
+            table.owners[s] = v;
+            table.kinds[s] = kindOf(v);
+            table.currentMileage[s] = v.getCurrentMileage();
+            table.fuelLevel[s] = v.storedFuelLevel();
+            table.currentCargo[s] = v.storedCargo();
+            table.currentPassengers[s] = v.storedPassengers();
+            table.efficiency[s] = v.getFuelEfficiency();
+            v.enterTable(table, s);
+        }
+    }
+
+    public void detach(Vehicle v) {
+        synchronized (v) {
+            if (v.getTable() != table) {
+                return;
+            }
+            int s = v.getSlot();
+            v.leaveTable();
+            table.owners[s] = null;
+            table.kinds[s] = 0;
+        }
+        holes++;
+        if (holes > used / 2) {
+            moveTo(new Table(Math.max(INITIAL_CAPACITY, size() * 2)), liveVehicles());
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < used; i++) {
+            Vehicle v = table.owners[i];
+            if (v != null) {
+                synchronized (v) {
+                    v.leaveTable();
+                }
+            }
+        }
+        table = new Table(INITIAL_CAPACITY);
+        used = 0;
+        holes = 0;
+    }
+
+    // Gives the attached vehicles new slots in the given order, which must hold each of them once
+    public void reorder(Iterable<Vehicle> order) {
+        moveTo(new Table(table.owners.length), order);
+    }
+
+    // Same as calling FuelConsumable.refuel(amount) on each attached vehicle, for amount > 0.
+    // Each vehicle only reports the refuel when reportOperations is set, see consumeFuel().
+    public void refuel(double amount, boolean reportOperations) {
+        Table t = table;
+        if (!reportOperations) {
+            for (int i = 0; i < used; i++) {
+                if ((t.kinds[i] & BURNS_FUEL) != 0) {
+                    addFuel(t, i, amount);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < used; i++) {
+            if ((t.kinds[i] & FUEL_CONSUMABLE) == 0) {
+                continue;
+            }
+            Vehicle v = t.owners[i];
+            synchronized (v) {
+                if ((t.kinds[i] & BURNS_FUEL) != 0) {
+                    addFuel(t, i, amount);
+                }
+                v.operationPerformed(VehicleOperation.REFUEL);
+            }
+        }
+    }
+
+    // Same as calling FuelConsumable.consumeFuel(distance) on each attached vehicle in fleet
+    // order and adding up what they used. Vehicles without enough fuel are passed to
+    // insufficientFuel, after their lock is released, and left out of the total.
+    //
+    // Vehicles only have to be locked so they can report the operation in a consistent
+    // state. When nobody needs the reports the pass runs down the efficiency and fuel
+    // columns alone, without touching the vehicles, and takes the fuel atomically as the
+    // vehicles do. The total is added up in slot order either way, so it comes out the same.
+    public double consumeFuel(double distance, Consumer<Vehicle> insufficientFuel, boolean reportOperations) {
+        Table t = table;
+        double sum = 0;
+        if (!reportOperations) {
+            for (int i = 0; i < used; i++) {
+                if ((t.kinds[i] & BURNS_FUEL) == 0) {
+                    continue;
+                }
+                double consumedFuel = distance / t.efficiency[i];
+                if (takeFuel(t, i, consumedFuel)) {
+                    sum += consumedFuel;
+                }
+                else {
+                    insufficientFuel.accept(t.owners[i]);
+                }
+            }
+            return sum;
+        }
+        for (int i = 0; i < used; i++) {
+            if ((t.kinds[i] & FUEL_CONSUMABLE) == 0) {
+                continue;
+            }
+            Vehicle v = t.owners[i];
+            boolean enoughFuel = true;
+            synchronized (v) {
+                if ((t.kinds[i] & BURNS_FUEL) != 0) {
+                    double consumedFuel = distance / t.efficiency[i];
+                    enoughFuel = takeFuel(t, i, consumedFuel);
+                    if (enoughFuel) {
+                        sum += consumedFuel;
+                    }
+                }
+                if (enoughFuel) {
+                    v.operationPerformed(VehicleOperation.CONSUME_FUEL);
+                }
+            }
+            if (!enoughFuel) {
+                insufficientFuel.accept(v);
+            }
+        }
+        return sum;
+    }
+
+    // Fuel levels are changed with compare and set, since the passes above may change them
+    // without holding the vehicle's lock. Doubles are compared bit for bit.
+    static void setFuel(Table t, int s, double fuelLevel) {
+        FUEL.setVolatile(t.fuelLevel, s, fuelLevel);
+    }
+
+    static void addFuel(Table t, int s, double amount) {
+        double fuelLevel;
+        do {
+            fuelLevel = (double) FUEL.getVolatile(t.fuelLevel, s);
+        } while (!FUEL.compareAndSet(t.fuelLevel, s, fuelLevel, fuelLevel + amount));
+    }
+
+    // Same check as the vehicles' consumeFuel(): fails if amount is more than the fuel level
+    static boolean takeFuel(Table t, int s, double amount) {
+        double fuelLevel;
+        do {
+            fuelLevel = (double) FUEL.getVolatile(t.fuelLevel, s);
+            if (amount > fuelLevel) {
+                return false;
+            }
+        } while (!FUEL.compareAndSet(t.fuelLevel, s, fuelLevel, fuelLevel - amount));
+        return true;
+    }
+
+    // Takes back a change of the fuel level from before to after, see Vehicle.tryUndoChange().
+    // Fails, changing nothing, if that would leave less than no fuel.
+    static boolean undoFuel(Table t, int s, double before, double after) {
+        double fuelLevel;
+        double undone;
+        do {
+            fuelLevel = (double) FUEL.getVolatile(t.fuelLevel, s);
+            undone = fuelLevel == after ? before : fuelLevel - (after - before);
+            if (undone < 0) {
+                return false;
+            }
+        } while (!FUEL.compareAndSet(t.fuelLevel, s, fuelLevel, undone));
+        return true;
+    }
+
+    private void moveTo(Table to, Iterable<Vehicle> order) {
+        Table from = table;
+        int s = 0;
+        for (var v : order) {
+            synchronized (v) {
+                from.copySlot(v.getSlot(), to, s);
+                to.owners[s] = v;
+                v.enterTable(to, s);
+            }
+            s++;
+        }
+        table = to;
+        used = s;
+        holes = 0;
+    }
+
+    private List<Vehicle> liveVehicles() {
+        Table t = table;
+        int count = used;
+        List<Vehicle> live = new ArrayList<>(size());
+        for (int i = 0; i < count; i++) {
+            if (t.owners[i] != null) {
+                live.add(t.owners[i]);
+            }
+        }
+        return live;
+    }
+
+    private static byte kindOf(Vehicle v) {
+        byte kind = ATTACHED;
+        if (v instanceof FuelConsumable) {
+            kind |= FUEL_CONSUMABLE;
+            if (!(v instanceof WaterVehicle w && w.getHasSail())) {
+                kind |= BURNS_FUEL;
+            }
+        }
+        return kind;
+    }
+}
@@ -0,0 +1,24 @@
+package vehicles;
+
+// Outcome of the non-throwing vehicle operations, tryMove() and the try methods of the
+// interfaces. Failures carry the message the throwing versions use for their exceptions.
+public enum OperationStatus {
+    OK(""),
+    INVALID_DISTANCE("Distance cannot be less than 0"),
+    INVALID_FUEL_AMOUNT("Fuel Amount should be greater than 0"),
+    INSUFFICIENT_FUEL("Not enough fuel"),
+    CARGO_OVERLOAD("Weight exceeds the Capacity"),
+    NOT_ENOUGH_CARGO("Not enough cargo"),
+    PASSENGER_OVERLOAD("Not enough Capacity"),
+    NOT_ENOUGH_PASSENGERS("Not enough Passengers");
+
+    private final String message;
+
+    OperationStatus(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
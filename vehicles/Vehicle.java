@@ -1,13 +1,32 @@
 package vehicles;
 
+import events.EventType;
+import events.Events;
 import exceptions.InvalidOperationException;
+import vehicles.interfaces.CargoCarrier;
+import vehicles.interfaces.PassengerCarrier;
+import vehicles.interfaces.VehicleObserver;
 
 public abstract class Vehicle implements Comparable<Vehicle> {
 
     private String id;
     private String model;
     private double maxSpeed;
-    private double currentMileage;
+    // Mutable state is volatile so that readers never wait on a vehicle's lock,
+    // while changes are made inside methods synchronized on the vehicle itself.
+    // Subclasses keep their fuel, cargo and passengers here too, through the
+    // stored/store methods, so that a FleetColumns can take the state over.
+    private volatile double currentMileage;
+    private volatile double fuelLevel;
+    private volatile double currentCargo;
+    private volatile int currentPassengers;
+    private volatile VehicleObserver observer;
+    // calculateFuelEfficiency() as of the last efficiencyChanged(), NaN until first asked for
+    private volatile double fuelEfficiency = Double.NaN;
+
+    // Set while the state above lives at slot in a FleetColumns table instead of in the fields
+    private volatile FleetColumns.Table table;
+    private volatile int slot;
 
     public Vehicle(String id, String model, double maxSpeed, double currentMileage) {
         this.id = id;
@@ -16,17 +35,74 @@ public abstract class Vehicle implements Comparable<Vehicle> {
         this.currentMileage = currentMileage;
     }
 
-    public abstract void move(double distance) throws InvalidOperationException;
+    public void move(double distance) throws InvalidOperationException {
+        OperationStatus status = tryMove(distance);
+        if (status != OperationStatus.OK) {
+            throw new InvalidOperationException(getMoveFailure(status));
+        }
+    }
+
+    // move() without throwing, for the bulk paths. Says why the vehicle did not move instead.
+    // The move is made under the vehicle's lock and reported after it is let go, so a sink
+    // that keeps publishers waiting when it is full does not keep others from the vehicle.
+    public OperationStatus tryMove(double distance) {
+        OperationStatus status = tryMoveUnreported(distance);
+        if (status == OperationStatus.OK) {
+            reportMove();
+        }
+        return status;
+    }
+
+    // tryMove() without emitting VEHICLE_MOVED, for callers that hold the vehicle's lock
+    // around the move. They call reportMove() once they have let it go.
+    public abstract OperationStatus tryMoveUnreported(double distance);
+
+    public void reportMove() {
+        if (Events.isEnabled(EventType.VEHICLE_MOVED)) {
+            Events.emit(EventType.VEHICLE_MOVED, id, getMoveMessage());
+        }
+    }
+
+    // What a move is reported with
+    protected abstract String getMoveMessage();
+
+    // The message move() fails with for the given status
+    public String getMoveFailure(OperationStatus status) {
+        if (status == OperationStatus.INSUFFICIENT_FUEL) {
+            return status.getMessage() + " for vehicle ID: " + id;
+        }
+        return status.getMessage();
+    }
 
     public abstract double calculateFuelEfficiency();
 
+    // calculateFuelEfficiency(), remembered until the vehicle reports through
+    // efficiencyChanged() that something it depends on has changed
+    public double getFuelEfficiency() {
+        double efficiency = fuelEfficiency;
+        if (Double.isNaN(efficiency)) {
+            // Under the lock, so a change made meanwhile cannot be overwritten with an older value
+            synchronized (this) {
+                efficiency = fuelEfficiency;
+                if (Double.isNaN(efficiency)) {
+                    efficiency = calculateFuelEfficiency();
+                    fuelEfficiency = efficiency;
+                }
+            }
+        }
+        return efficiency;
+    }
+
     public abstract double estimateJourneyTime(double distance);
 
     public void displayInfo(){
-        System.out.println("Vehicle ID: " + id);
-        System.out.println("Vehicle Model: " + model);
-        System.out.println("Vehicle Max Speed: " + maxSpeed);
-        System.out.println("Vehicle Current Mileage: " + currentMileage);
+        System.out.println(getInfo());
+    }
+
+    // What displayInfo() prints, one line per field
+    public String getInfo() {
+        String nl = System.lineSeparator();
+        return "Vehicle ID: " + id + nl + "Vehicle Model: " + model + nl + "Vehicle Max Speed: " + maxSpeed + nl + "Vehicle Current Mileage: " + getCurrentMileage();
     }
 
     public double getMaxSpeed() {
@@ -34,23 +110,309 @@ public abstract class Vehicle implements Comparable<Vehicle> {
     }
 
     public double getCurrentMileage() {
-        return currentMileage;
+        while (true) {
+            FleetColumns.Table t = table;
+            if (t == null) {
+                return currentMileage;
+            }
+            int s = slotIn(t);
+            if (s >= 0) {
+                return t.currentMileage[s];
+            }
+            Thread.onSpinWait();
+        }
     }
 
     public String getId() {
         return id;
     }
 
-    public void setCurrentMileage(double currentMileage) {
-        this.currentMileage = currentMileage;
+    public synchronized void setCurrentMileage(double currentMileage) {
+        updateMileage(currentMileage);
+        operationPerformed(VehicleOperation.SET_MILEAGE);
+    }
+
+    // Changes the mileage as one step of a larger operation, e.g. move(), which reports itself
+    protected void updateMileage(double currentMileage) {
+        double oldMileage = getCurrentMileage();
+        FleetColumns.Table t = table;
+        if (t == null) {
+            this.currentMileage = currentMileage;
+        }
+        else {
+            t.currentMileage[slot] = currentMileage;
+        }
+        if (observer != null) {
+            observer.mileageChanged(this, oldMileage);
+        }
     }
 
     public String getModel() {
         return model;
     }
 
+    public VehicleObserver getObserver() {
+        return observer;
+    }
+
+    // A vehicle reports its changes to one observer, normally the fleet it belongs to
+    public void setObserver(VehicleObserver observer) {
+        this.observer = observer;
+    }
+
+    // State kept for subclasses. Reads never lock. Writes must be made holding this vehicle's lock.
+    protected double storedFuelLevel() {
+        while (true) {
+            FleetColumns.Table t = table;
+            if (t == null) {
+                return fuelLevel;
+            }
+            int s = slotIn(t);
+            if (s >= 0) {
+                return t.fuelLevel[s];
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    protected void storeFuelLevel(double fuelLevel) {
+        FleetColumns.Table t = table;
+        if (t == null) {
+            this.fuelLevel = fuelLevel;
+        }
+        else {
+            FleetColumns.setFuel(t, slot, fuelLevel);
+        }
+    }
+
+    // FleetColumns changes fuel levels in its passes without taking the vehicles' locks, so
+    // changes to the fuel level that depend on its current value are made with these, which
+    // update a fuel column atomically
+    protected void addFuelLevel(double amount) {
+        FleetColumns.Table t = table;
+        if (t == null) {
+            fuelLevel += amount;
+        }
+        else {
+            FleetColumns.addFuel(t, slot, amount);
+        }
+        fuelLevelChanged();
+    }
+
+    // Takes amount away unless there is less fuel than that, and says whether it did
+    protected boolean takeFuelLevel(double amount) {
+        FleetColumns.Table t = table;
+        if (t == null) {
+            if (amount > fuelLevel) {
+                return false;
+            }
+            fuelLevel -= amount;
+        }
+        else if (!FleetColumns.takeFuel(t, slot, amount)) {
+            return false;
+        }
+        fuelLevelChanged();
+        return true;
+    }
+
+    private void fuelLevelChanged() {
+        VehicleObserver observer = this.observer;
+        if (observer != null) {
+            observer.fuelLevelChanged(this);
+        }
+    }
+
+    protected double storedCargo() {
+        while (true) {
+            FleetColumns.Table t = table;
+            if (t == null) {
+                return currentCargo;
+            }
+            int s = slotIn(t);
+            if (s >= 0) {
+                return t.currentCargo[s];
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    protected void storeCargo(double currentCargo) {
+        FleetColumns.Table t = table;
+        if (t == null) {
+            this.currentCargo = currentCargo;
+        }
+        else {
+            t.currentCargo[slot] = currentCargo;
+        }
+    }
+
+    protected int storedPassengers() {
+        while (true) {
+            FleetColumns.Table t = table;
+            if (t == null) {
+                return currentPassengers;
+            }
+            int s = slotIn(t);
+            if (s >= 0) {
+                return t.currentPassengers[s];
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    protected void storePassengers(int currentPassengers) {
+        FleetColumns.Table t = table;
+        if (t == null) {
+            this.currentPassengers = currentPassengers;
+        }
+        else {
+            t.currentPassengers[slot] = currentPassengers;
+        }
+    }
+
+    // The slot to read in t, or -1 if table and slot were read while FleetColumns was moving
+    // this vehicle and do not match, in which case the reader tries again. A slot of a table
+    // never belongs to more than one vehicle, so if it belongs to this one the values there
+    // are this vehicle's. A move only sets slot and then table, so retrying never waits long.
+    private int slotIn(FleetColumns.Table t) {
+        int s = slot;
+        return s < t.owners.length && t.owners[s] == this ? s : -1;
+    }
+
+    // Called by FleetColumns holding this vehicle's lock, once the state has been copied to slot s of t
+    void enterTable(FleetColumns.Table t, int s) {
+        slot = s;
+        table = t;
+    }
+
+    // Called by FleetColumns holding this vehicle's lock. Copies the state back into the fields.
+    void leaveTable() {
+        FleetColumns.Table t = table;
+        int s = slot;
+        currentMileage = t.currentMileage[s];
+        fuelLevel = t.fuelLevel[s];
+        currentCargo = t.currentCargo[s];
+        currentPassengers = t.currentPassengers[s];
+        table = null;
+    }
+
+    FleetColumns.Table getTable() {
+        return table;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    // The state that operations change, for putting back with restoreState() or tryUndoChange()
+    public synchronized VehicleState saveState() {
+        return new VehicleState(getCurrentMileage(), storedFuelLevel(), storedCargo(), storedPassengers());
+    }
+
+    // Puts back state saved by saveState(), e.g. when a batch of operations is undone, and
+    // reports it as a single operation
+    public synchronized void restoreState(VehicleState state) {
+        double oldEfficiency = getFuelEfficiency();
+        if (state.currentMileage() != getCurrentMileage()) {
+            updateMileage(state.currentMileage());
+        }
+        if (state.fuelLevel() != storedFuelLevel()) {
+            storeFuelLevel(state.fuelLevel());
+            fuelLevelChanged();
+        }
+        storeCargo(state.currentCargo());
+        storePassengers(state.currentPassengers());
+        efficiencyChanged(oldEfficiency);
+        operationPerformed(VehicleOperation.RESTORE_STATE);
+    }
+
+    // Takes back what one operation changed, given the states saveState() gave just before
+    // and just after it, and keeps what other operations have changed since. State nothing
+    // else has changed since is put back exactly as it was before. If the changes made since
+    // leave no room for taking it back, e.g. the cargo it loaded has been unloaded, nothing
+    // is changed and the status says why, as the inverse operation would have failed.
+    public synchronized OperationStatus tryUndoChange(VehicleState before, VehicleState after) {
+        double mileage = undone(getCurrentMileage(), before.currentMileage(), after.currentMileage());
+        double cargo = undone(storedCargo(), before.currentCargo(), after.currentCargo());
+        int passengers = storedPassengers() - (after.currentPassengers() - before.currentPassengers());
+        // Only what the operation changed is checked, the rest is left as it is
+        if (before.currentMileage() != after.currentMileage() && mileage < 0) {
+            return OperationStatus.INVALID_DISTANCE;
+        }
+        if (before.currentCargo() != after.currentCargo()) {
+            if (cargo < 0) {
+                return OperationStatus.NOT_ENOUGH_CARGO;
+            }
+            if (this instanceof CargoCarrier carrier && cargo > carrier.getCargoCapacity()) {
+                return OperationStatus.CARGO_OVERLOAD;
+            }
+        }
+        if (before.currentPassengers() != after.currentPassengers()) {
+            if (passengers < 0) {
+                return OperationStatus.NOT_ENOUGH_PASSENGERS;
+            }
+            if (this instanceof PassengerCarrier carrier && passengers > carrier.getPassengerCapacity()) {
+                return OperationStatus.PASSENGER_OVERLOAD;
+            }
+        }
+        double oldEfficiency = getFuelEfficiency();
+        // Checked and changed in one step, as FleetColumns passes change it without this lock
+        if (before.fuelLevel() != after.fuelLevel()) {
+            if (!undoFuelLevel(before.fuelLevel(), after.fuelLevel())) {
+                return OperationStatus.INSUFFICIENT_FUEL;
+            }
+            fuelLevelChanged();
+        }
+        if (mileage != getCurrentMileage()) {
+            updateMileage(mileage);
+        }
+        storeCargo(cargo);
+        storePassengers(passengers);
+        efficiencyChanged(oldEfficiency);
+        operationPerformed(VehicleOperation.RESTORE_STATE);
+        return OperationStatus.OK;
+    }
+
+    private boolean undoFuelLevel(double before, double after) {
+        FleetColumns.Table t = table;
+        if (t != null) {
+            return FleetColumns.undoFuel(t, slot, before, after);
+        }
+        double undone = undone(fuelLevel, before, after);
+        if (undone < 0) {
+            return false;
+        }
+        fuelLevel = undone;
+        return true;
+    }
+
+    private static double undone(double current, double before, double after) {
+        return current == after ? before : current - (after - before);
+    }
+
+    // Subclasses call this after changing state that calculateFuelEfficiency() depends on
+    protected void efficiencyChanged(double oldEfficiency) {
+        double efficiency = calculateFuelEfficiency();
+        fuelEfficiency = efficiency;
+        FleetColumns.Table t = table;
+        if (t != null) {
+            t.efficiency[slot] = efficiency;
+        }
+        if (observer != null && oldEfficiency != efficiency) {
+            observer.efficiencyChanged(this, oldEfficiency);
+        }
+    }
+
+    // Subclasses call this at the end of each operation that changed the vehicle
+    protected void operationPerformed(VehicleOperation operation) {
+        VehicleObserver observer = this.observer;
+        if (observer != null) {
+            observer.operationPerformed(this, operation);
+        }
+    }
+
     @Override
     public int compareTo(Vehicle o) {
-        return Double.compare(this.calculateFuelEfficiency(), o.calculateFuelEfficiency());
+        return Double.compare(this.getFuelEfficiency(), o.getFuelEfficiency());
     }
 }
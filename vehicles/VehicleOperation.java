@@ -0,0 +1,15 @@
+package vehicles;
+
+// Operations that change a vehicle, as reported to its observer once they succeed
+public enum VehicleOperation {
+    MOVE,
+    SET_MILEAGE,
+    REFUEL,
+    CONSUME_FUEL,
+    BOARD_PASSENGERS,
+    DISEMBARK_PASSENGERS,
+    LOAD_CARGO,
+    UNLOAD_CARGO,
+    PERFORM_MAINTENANCE,
+    RESTORE_STATE
+}
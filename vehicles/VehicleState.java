@@ -0,0 +1,5 @@
+package vehicles;
+
+// The part of a vehicle that its operations change, as saved by Vehicle.saveState()
+public record VehicleState(double currentMileage, double fuelLevel, double currentCargo, int currentPassengers) {
+}
@@ -2,12 +2,28 @@ package vehicles.interfaces;
 
 import exceptions.InvalidOperationException;
 import exceptions.OverloadException;
+import vehicles.OperationStatus;
 
 public interface CargoCarrier {
 
-    void loadCargo(double weight) throws OverloadException;
+    default void loadCargo(double weight) throws OverloadException {
+        OperationStatus status = tryLoadCargo(weight);
+        if (status != OperationStatus.OK) {
+            throw new OverloadException(status.getMessage());
+        }
+    }
 
-    void unloadCargo(double weight) throws InvalidOperationException;
+    default void unloadCargo(double weight) throws InvalidOperationException {
+        OperationStatus status = tryUnloadCargo(weight);
+        if (status != OperationStatus.OK) {
+            throw new InvalidOperationException(status.getMessage());
+        }
+    }
+
+    // loadCargo() and unloadCargo() without throwing, for the bulk paths
+    OperationStatus tryLoadCargo(double weight);
+
+    OperationStatus tryUnloadCargo(double weight);
 
     double getCargoCapacity();
 
@@ -2,12 +2,30 @@ package vehicles.interfaces;
 
 import exceptions.InsufficientFuelException;
 import exceptions.InvalidOperationException;
+import vehicles.OperationStatus;
 
 public interface FuelConsumable {
 
-    void refuel(double amount) throws InvalidOperationException;
+    default void refuel(double amount) throws InvalidOperationException {
+        OperationStatus status = tryRefuel(amount);
+        if (status != OperationStatus.OK) {
+            throw new InvalidOperationException(status.getMessage());
+        }
+    }
+
+    // refuel() without throwing, for the bulk paths
+    OperationStatus tryRefuel(double amount);
 
     double getFuelLevel();
 
-    double consumeFuel(double distance) throws InsufficientFuelException;
+    default double consumeFuel(double distance) throws InsufficientFuelException {
+        double consumedFuel = tryConsumeFuel(distance);
+        if (Double.isNaN(consumedFuel)) {
+            throw new InsufficientFuelException(OperationStatus.INSUFFICIENT_FUEL.getMessage());
+        }
+        return consumedFuel;
+    }
+
+    // consumeFuel() without throwing, which gives NaN instead when there is not enough fuel
+    double tryConsumeFuel(double distance);
 }
@@ -4,7 +4,16 @@ public interface Maintainable {
 
     void scheduleMaintenance();
 
+    // Whether maintenance was scheduled and has not been performed since
+    boolean isMaintenanceScheduled();
+
+    // Puts back a schedule kept elsewhere, e.g. in a fleet snapshot
+    void setMaintenanceScheduled(boolean scheduled);
+
     boolean needsMaintenance();
 
+    // Mileage above which the vehicle needs maintenance
+    double getMaintenanceThreshold();
+
     void performMaintenance();
 }
@@ -2,12 +2,28 @@ package vehicles.interfaces;
 
 import exceptions.InvalidOperationException;
 import exceptions.OverloadException;
+import vehicles.OperationStatus;
 
 public interface PassengerCarrier {
 
-    void boardPassengers(int count) throws OverloadException;
+    default void boardPassengers(int count) throws OverloadException {
+        OperationStatus status = tryBoardPassengers(count);
+        if (status != OperationStatus.OK) {
+            throw new OverloadException(status.getMessage());
+        }
+    }
 
-    void disembarkPassengers(int count) throws InvalidOperationException;
+    default void disembarkPassengers(int count) throws InvalidOperationException {
+        OperationStatus status = tryDisembarkPassengers(count);
+        if (status != OperationStatus.OK) {
+            throw new InvalidOperationException(status.getMessage());
+        }
+    }
+
+    // boardPassengers() and disembarkPassengers() without throwing, for the bulk paths
+    OperationStatus tryBoardPassengers(int count);
+
+    OperationStatus tryDisembarkPassengers(int count);
 
     int getPassengerCapacity();
 
@@ -0,0 +1,19 @@
+package vehicles.interfaces;
+
+import vehicles.Vehicle;
+import vehicles.VehicleOperation;
+
+public interface VehicleObserver {
+
+    void mileageChanged(Vehicle vehicle, double oldMileage);
+
+    void efficiencyChanged(Vehicle vehicle, double oldEfficiency);
+
+    // Called when the fuel level of a FuelConsumable goes up or down, while the vehicle is locked
+    default void fuelLevelChanged(Vehicle vehicle) {
+    }
+
+    // Called once per operation, after its changes are made and while the vehicle is still locked
+    default void operationPerformed(Vehicle vehicle, VehicleOperation operation) {
+    }
+}
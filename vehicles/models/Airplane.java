@@ -1,22 +1,24 @@
 package vehicles.models;
 
+import events.EventType;
+import events.Events;
 import exceptions.*;
+import vehicles.OperationStatus;
+import vehicles.VehicleOperation;
 import vehicles.interfaces.*;
 import vehicles.types.AirVehicle;
 
 public class Airplane extends AirVehicle implements FuelConsumable, PassengerCarrier, CargoCarrier, Maintainable {
 
-    private double fuelLevel;
     private final int passengerCapacity = 200;
-    private int currentPassengers;
     private final double cargoCapacity = 10000;
-    private double currentCargo;
-    private boolean maintenanceNeeded;
+    private final double maintenanceThreshold = 10000;
+    private volatile boolean maintenanceNeeded;
 
     // Constructor for CLI
     public Airplane(String id, String model, double maxSpeed, double currentMileage, double maxAltitude, int currentPassengers, double currentCargo) throws OverloadException{
         super(id, model, maxSpeed, currentMileage, maxAltitude);
-        this.fuelLevel = 0;
+        storeFuelLevel(0);
         try {
             boardPassengers(currentPassengers);
         } catch (OverloadException e) {
@@ -33,22 +35,26 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
     // Constructor for CSV reading
     public Airplane(String id, String model, double maxSpeed, double currentMileage, double maxAltitude, int currentPassengers, double currentCargo, double fuelLevel) throws OverloadException{
         this(id, model, maxSpeed, currentMileage, maxAltitude, currentPassengers, currentCargo);
-        this.fuelLevel = fuelLevel;
+        storeFuelLevel(fuelLevel);
     }
 
     // AirVehicle Methods
     @Override
-    public void move(double distance) throws InvalidOperationException {
+    public synchronized OperationStatus tryMoveUnreported(double distance) {
         if (distance < 0) {
-            throw new InvalidOperationException("Distance cannot be less than 0");
+            return OperationStatus.INVALID_DISTANCE;
         }
-        try {
-            consumeFuel(distance);
-        } catch (InsufficientFuelException e) {
-            throw new InvalidOperationException(e.getMessage() + " for vehicle ID: " + getId());
+        if (Double.isNaN(burnFuel(distance))) {
+            return OperationStatus.INSUFFICIENT_FUEL;
         }
-        System.out.println("Flying at " + getMaxAltitude() + "...");
-        setCurrentMileage(getCurrentMileage() + distance);
+        updateMileage(getCurrentMileage() + distance);
+        operationPerformed(VehicleOperation.MOVE);
+        return OperationStatus.OK;
+    }
+
+    @Override
+    protected String getMoveMessage() {
+        return moveMessage(getMaxAltitude());
     }
 
     @Override
@@ -56,45 +62,64 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
         return 5.0;
     }
 
+    // What tryMove() reports for a plane flying at maxAltitude
+    public static String moveMessage(double maxAltitude) {
+        return "Flying at " + maxAltitude + "...";
+    }
+
     // FuelConsumable Methods
     @Override
-    public void refuel(double amount) throws InvalidOperationException {
+    public synchronized OperationStatus tryRefuel(double amount) {
         if (amount <= 0) {
-            throw new InvalidOperationException("Fuel Amount should be greater than 0");
+            return OperationStatus.INVALID_FUEL_AMOUNT;
         }
-        fuelLevel += amount;
+        addFuelLevel(amount);
+        operationPerformed(VehicleOperation.REFUEL);
+        return OperationStatus.OK;
     }
 
     @Override
     public double getFuelLevel() {
-        return fuelLevel;
+        return storedFuelLevel();
     }
 
     @Override
-    public double consumeFuel(double distance) throws InsufficientFuelException {
-        double consumedFuel = distance / calculateFuelEfficiency();
-        if (consumedFuel > getFuelLevel()) {
-            throw new InsufficientFuelException("Not enough fuel");
+    public synchronized double tryConsumeFuel(double distance) {
+        double consumedFuel = burnFuel(distance);
+        if (!Double.isNaN(consumedFuel)) {
+            operationPerformed(VehicleOperation.CONSUME_FUEL);
+        }
+        return consumedFuel;
+    }
+
+    // tryConsumeFuel() without reporting the operation, for use inside tryMove()
+    private double burnFuel(double distance) {
+        double consumedFuel = distance / getFuelEfficiency();
+        if (!takeFuelLevel(consumedFuel)) {
+            return Double.NaN;
         }
-        fuelLevel -= consumedFuel;
         return consumedFuel;
     }
 
     // PassengerCarrier Methods
     @Override
-    public void boardPassengers(int count) throws OverloadException {
+    public synchronized OperationStatus tryBoardPassengers(int count) {
         if (count > getPassengerCapacity()) {
-            throw new OverloadException("Not enough Capacity");
+            return OperationStatus.PASSENGER_OVERLOAD;
         }
-        currentPassengers += count;
+        storePassengers(storedPassengers() + count);
+        operationPerformed(VehicleOperation.BOARD_PASSENGERS);
+        return OperationStatus.OK;
     }
 
     @Override
-    public void disembarkPassengers(int count) throws InvalidOperationException {
+    public synchronized OperationStatus tryDisembarkPassengers(int count) {
         if (count > getCurrentPassengers()) {
-            throw new InvalidOperationException("Not enough Passengers");
+            return OperationStatus.NOT_ENOUGH_PASSENGERS;
         }
-        currentPassengers -= count;
+        storePassengers(storedPassengers() - count);
+        operationPerformed(VehicleOperation.DISEMBARK_PASSENGERS);
+        return OperationStatus.OK;
     }
 
     @Override
@@ -104,24 +129,28 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
 
     @Override
     public int getCurrentPassengers() {
-        return currentPassengers;
+        return storedPassengers();
     }
 
     // CargoCarrier Methods
     @Override
-    public void loadCargo(double weight) throws OverloadException {
+    public synchronized OperationStatus tryLoadCargo(double weight) {
         if (weight > getCargoCapacity()) {
-            throw new OverloadException("Weight exceeds the Capacity");
+            return OperationStatus.CARGO_OVERLOAD;
         }
-        currentCargo += weight;
+        storeCargo(storedCargo() + weight);
+        operationPerformed(VehicleOperation.LOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
-    public void unloadCargo(double weight) throws InvalidOperationException {
+    public synchronized OperationStatus tryUnloadCargo(double weight) {
         if (weight > getCurrentCargo()) {
-            throw new InvalidOperationException("Not enough cargo");
+            return OperationStatus.NOT_ENOUGH_CARGO;
         }
-        currentCargo -= weight;
+        storeCargo(storedCargo() - weight);
+        operationPerformed(VehicleOperation.UNLOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
@@ -131,31 +160,55 @@ public class Airplane extends AirVehicle implements FuelConsumable, PassengerCar
 
     @Override
     public double getCurrentCargo() {
-        return currentCargo;
+        return storedCargo();
     }
 
     // Maintainable Methods
     @Override
-    public void scheduleMaintenance() {
+    public synchronized void scheduleMaintenance() {
         maintenanceNeeded = needsMaintenance();
     }
 
+    @Override
+    public boolean isMaintenanceScheduled() {
+        return maintenanceNeeded;
+    }
+
+    @Override
+    public synchronized void setMaintenanceScheduled(boolean scheduled) {
+        maintenanceNeeded = scheduled;
+    }
+
     @Override
     public boolean needsMaintenance() {
-        if (getCurrentMileage() > 10000) {
+        if (getCurrentMileage() > getMaintenanceThreshold()) {
             return true;
         }
         return false;
     }
 
+    @Override
+    public double getMaintenanceThreshold() {
+        return maintenanceThreshold;
+    }
+
+    // Reported once the vehicle's lock is let go
     @Override
     public void performMaintenance() {
-        if (maintenanceNeeded) {
-            maintenanceNeeded = false;
-            System.out.println("Maintenance Completed for vehicle ID: " + getId());
+        if (completeMaintenance()) {
+            Events.emit(EventType.MAINTENANCE_COMPLETED, getId(), "Maintenance Completed for vehicle ID: " + getId());
         }
         else {
-            System.out.println("Maintenance not needed for vehicle ID: " + getId());
+            Events.emit(EventType.MAINTENANCE_NOT_NEEDED, getId(), "Maintenance not needed for vehicle ID: " + getId());
+        }
+    }
+
+    private synchronized boolean completeMaintenance() {
+        if (!maintenanceNeeded) {
+            return false;
         }
+        maintenanceNeeded = false;
+        operationPerformed(VehicleOperation.PERFORM_MAINTENANCE);
+        return true;
     }
 }
\ No newline at end of file
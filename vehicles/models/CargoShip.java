@@ -1,6 +1,10 @@
 package vehicles.models;
 
+import events.EventType;
+import events.Events;
 import exceptions.*;
+import vehicles.OperationStatus;
+import vehicles.VehicleOperation;
 import vehicles.interfaces.CargoCarrier;
 import vehicles.interfaces.FuelConsumable;
 import vehicles.interfaces.Maintainable;
@@ -8,16 +12,17 @@ import vehicles.types.WaterVehicle;
 
 public class CargoShip extends WaterVehicle implements CargoCarrier, Maintainable, FuelConsumable {
 
+    public static final String MOVE_MESSAGE = "Sailing with cargo...";
+
     public final double cargoCapacity = 50000;
-    public double currentCargo;
-    public boolean maintenanceNeeded;
-    public double fuelLevel;
+    public final double maintenanceThreshold = 10000;
+    public volatile boolean maintenanceNeeded;
 
     // Constructor for CLI
     public CargoShip(String id, String model, double maxSpeed, double currentMileage, boolean hasSail, double currentCargo) throws OverloadException{
         super(id, model, maxSpeed, currentMileage, hasSail);
         if (!hasSail) {
-            fuelLevel = 0;
+            storeFuelLevel(0);
         }
         try {
             loadCargo(currentCargo);
@@ -30,24 +35,28 @@ public class CargoShip extends WaterVehicle implements CargoCarrier, Maintainabl
     // Constructor for CSV reading (If hasSail = false)
     public CargoShip(String id, String model, double maxSpeed, double currentMileage, boolean hasSail, double currentCargo, double fuelLevel) throws OverloadException{
         this(id, model, maxSpeed, currentMileage, hasSail, currentCargo);
-        this.fuelLevel = fuelLevel;
+        storeFuelLevel(fuelLevel);
     }
 
     // WaterVehicle Methods
     @Override
-    public void move(double distance) throws InvalidOperationException {
+    public synchronized OperationStatus tryMoveUnreported(double distance) {
         if (distance < 0) {
-            throw new InvalidOperationException("Distance cannot be less than 0");
+            return OperationStatus.INVALID_DISTANCE;
         }
         if (!getHasSail()) {
-            try {
-                consumeFuel(distance);
-            } catch (InsufficientFuelException e) {
-                throw new InvalidOperationException(e.getMessage() + " for vehicle ID: " + getId());
+            if (Double.isNaN(burnFuel(distance))) {
+                return OperationStatus.INSUFFICIENT_FUEL;
             }
         }
-        System.out.println("Sailing with cargo...");
-        setCurrentMileage(getCurrentMileage() + distance);
+        updateMileage(getCurrentMileage() + distance);
+        operationPerformed(VehicleOperation.MOVE);
+        return OperationStatus.OK;
+    }
+
+    @Override
+    protected String getMoveMessage() {
+        return MOVE_MESSAGE;
     }
 
     @Override
@@ -60,19 +69,23 @@ public class CargoShip extends WaterVehicle implements CargoCarrier, Maintainabl
 
     // CargoCarrier Methods
     @Override
-    public void loadCargo(double weight) throws OverloadException {
+    public synchronized OperationStatus tryLoadCargo(double weight) {
         if (weight > getCargoCapacity()) {
-            throw new OverloadException("Weight exceeds the Capacity");
+            return OperationStatus.CARGO_OVERLOAD;
         }
-        currentCargo += weight;
+        storeCargo(storedCargo() + weight);
+        operationPerformed(VehicleOperation.LOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
-    public void unloadCargo(double weight) throws InvalidOperationException {
+    public synchronized OperationStatus tryUnloadCargo(double weight) {
         if (weight > getCurrentCargo()) {
-            throw new InvalidOperationException("Not enough cargo");
+            return OperationStatus.NOT_ENOUGH_CARGO;
         }
-        currentCargo -= weight;
+        storeCargo(storedCargo() - weight);
+        operationPerformed(VehicleOperation.UNLOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
@@ -82,58 +95,92 @@ public class CargoShip extends WaterVehicle implements CargoCarrier, Maintainabl
 
     @Override
     public double getCurrentCargo() {
-        return currentCargo;
+        return storedCargo();
     }
 
     // Maintainable Methods
     @Override
-    public void scheduleMaintenance() {
+    public synchronized void scheduleMaintenance() {
         maintenanceNeeded = needsMaintenance();
     }
 
+    @Override
+    public boolean isMaintenanceScheduled() {
+        return maintenanceNeeded;
+    }
+
+    @Override
+    public synchronized void setMaintenanceScheduled(boolean scheduled) {
+        maintenanceNeeded = scheduled;
+    }
+
     @Override
     public boolean needsMaintenance() {
-        if (getCurrentMileage() > 10000) {
+        if (getCurrentMileage() > getMaintenanceThreshold()) {
             return true;
         }
         return false;
     }
 
+    @Override
+    public double getMaintenanceThreshold() {
+        return maintenanceThreshold;
+    }
+
+    // Reported once the vehicle's lock is let go
     @Override
     public void performMaintenance() {
-        if (maintenanceNeeded) {
-            maintenanceNeeded = false;
-            System.out.println("Maintenance Completed for vehicle ID: " + getId());
+        if (completeMaintenance()) {
+            Events.emit(EventType.MAINTENANCE_COMPLETED, getId(), "Maintenance Completed for vehicle ID: " + getId());
         }
         else {
-            System.out.println("Maintenance not needed for vehicle ID: " + getId());
+            Events.emit(EventType.MAINTENANCE_NOT_NEEDED, getId(), "Maintenance not needed for vehicle ID: " + getId());
         }
     }
 
+    private synchronized boolean completeMaintenance() {
+        if (!maintenanceNeeded) {
+            return false;
+        }
+        maintenanceNeeded = false;
+        operationPerformed(VehicleOperation.PERFORM_MAINTENANCE);
+        return true;
+    }
+
     // FuelConsumable Methods
     @Override
-    public void refuel(double amount) throws InvalidOperationException {
+    public synchronized OperationStatus tryRefuel(double amount) {
         if (amount <= 0) {
-            throw new InvalidOperationException("Fuel Amount should be greater than 0");
+            return OperationStatus.INVALID_FUEL_AMOUNT;
         }
         if (!getHasSail()) {
-            fuelLevel += amount;
+            addFuelLevel(amount);
         }
+        operationPerformed(VehicleOperation.REFUEL);
+        return OperationStatus.OK;
     }
 
     @Override
     public double getFuelLevel() {
-        return fuelLevel;
+        return storedFuelLevel();
     }
 
     @Override
-    public double consumeFuel(double distance) throws InsufficientFuelException {
+    public synchronized double tryConsumeFuel(double distance) {
+        double consumedFuel = burnFuel(distance);
+        if (!Double.isNaN(consumedFuel)) {
+            operationPerformed(VehicleOperation.CONSUME_FUEL);
+        }
+        return consumedFuel;
+    }
+
+    // tryConsumeFuel() without reporting the operation, for use inside tryMove()
+    private double burnFuel(double distance) {
         if (!getHasSail()) {
-            double consumedFuel = distance / calculateFuelEfficiency();
-            if (consumedFuel > getFuelLevel()) {
-                throw new InsufficientFuelException("Not enough fuel");
+            double consumedFuel = distance / getFuelEfficiency();
+            if (!takeFuelLevel(consumedFuel)) {
+                return Double.NaN;
             }
-            fuelLevel -= consumedFuel;
             return consumedFuel;
         }
         return 0.0;
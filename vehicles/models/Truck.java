@@ -1,6 +1,10 @@
 package vehicles.models;
 
+import events.EventType;
+import events.Events;
 import exceptions.*;
+import vehicles.OperationStatus;
+import vehicles.VehicleOperation;
 import vehicles.interfaces.CargoCarrier;
 import vehicles.interfaces.FuelConsumable;
 import vehicles.interfaces.Maintainable;
@@ -8,15 +12,16 @@ import vehicles.types.LandVehicle;
 
 public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier, Maintainable {
 
-    private double fuelLevel;
+    public static final String MOVE_MESSAGE = "Hauling Cargo...";
+
     private final double cargoCapacity = 5000;
-    private double currentCargo;
-    private boolean maintenanceNeeded;
+    private final double maintenanceThreshold = 10000;
+    private volatile boolean maintenanceNeeded;
 
     // Constructor for CLI
     public Truck(String id, String model, double maxSpeed, double currentMileage, double currentCargo) throws OverloadException{
         super(id, model, maxSpeed, currentMileage, 8);
-        this.fuelLevel = 0;
+        storeFuelLevel(0);
         try {
             loadCargo(currentCargo);
         } catch (OverloadException e) {
@@ -28,22 +33,26 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
     // Constructor for CSV reading
     public Truck(String id, String model, double maxSpeed, double currentMileage, double currentCargo, double fuelLevel) throws OverloadException{
         this(id, model, maxSpeed, currentMileage, currentCargo);
-        this.fuelLevel = fuelLevel;
+        storeFuelLevel(fuelLevel);
     }
 
     // LandVehicle Methods
     @Override
-    public void move(double distance) throws InvalidOperationException {
+    public synchronized OperationStatus tryMoveUnreported(double distance) {
         if (distance < 0) {
-            throw new InvalidOperationException("Distance cannot be less than 0");
+            return OperationStatus.INVALID_DISTANCE;
         }
-        try {
-            consumeFuel(distance);
-        } catch (InsufficientFuelException e) {
-            throw new InvalidOperationException(e.getMessage() + " for vehicle ID: " + getId());
+        if (Double.isNaN(burnFuel(distance))) {
+            return OperationStatus.INSUFFICIENT_FUEL;
         }
-        System.out.println("Hauling Cargo...");
-        setCurrentMileage(getCurrentMileage() + distance);
+        updateMileage(getCurrentMileage() + distance);
+        operationPerformed(VehicleOperation.MOVE);
+        return OperationStatus.OK;
+    }
+
+    @Override
+    protected String getMoveMessage() {
+        return MOVE_MESSAGE;
     }
 
     @Override
@@ -57,43 +66,61 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
 
     // FuelConsumable Methods
     @Override
-    public void refuel(double amount) throws InvalidOperationException {
+    public synchronized OperationStatus tryRefuel(double amount) {
         if (amount <= 0) {
-            throw new InvalidOperationException("Fuel Amount should be greater than 0");
+            return OperationStatus.INVALID_FUEL_AMOUNT;
         }
-        fuelLevel += amount;
+        addFuelLevel(amount);
+        operationPerformed(VehicleOperation.REFUEL);
+        return OperationStatus.OK;
     }
 
     @Override
     public double getFuelLevel() {
-        return fuelLevel;
+        return storedFuelLevel();
     }
 
     @Override
-    public double consumeFuel(double distance) throws InsufficientFuelException {
-        double consumedFuel = distance / calculateFuelEfficiency();
-        if (consumedFuel > getFuelLevel()) {
-            throw new InsufficientFuelException("Not enough fuel");
+    public synchronized double tryConsumeFuel(double distance) {
+        double consumedFuel = burnFuel(distance);
+        if (!Double.isNaN(consumedFuel)) {
+            operationPerformed(VehicleOperation.CONSUME_FUEL);
+        }
+        return consumedFuel;
+    }
+
+    // tryConsumeFuel() without reporting the operation, for use inside tryMove()
+    private double burnFuel(double distance) {
+        double consumedFuel = distance / getFuelEfficiency();
+        if (!takeFuelLevel(consumedFuel)) {
+            return Double.NaN;
         }
-        fuelLevel -= consumedFuel;
         return consumedFuel;
     }
 
     // CargoCarrier Methods
     @Override
-    public void loadCargo(double weight) throws OverloadException {
+    public synchronized OperationStatus tryLoadCargo(double weight) {
         if (weight > getCargoCapacity()) {
-            throw new OverloadException("Weight exceeds the Capacity");
+            return OperationStatus.CARGO_OVERLOAD;
         }
-        currentCargo += weight;
+        double oldEfficiency = getFuelEfficiency();
+        storeCargo(storedCargo() + weight);
+        efficiencyChanged(oldEfficiency);
+        operationPerformed(VehicleOperation.LOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
-    public void unloadCargo(double weight) throws InvalidOperationException {
+    public synchronized OperationStatus tryUnloadCargo(double weight) {
         if (weight > getCurrentCargo()) {
-            throw new InvalidOperationException("Not enough cargo");
+            return OperationStatus.NOT_ENOUGH_CARGO;
         }
-        currentCargo -= weight;
+        double oldEfficiency = getFuelEfficiency();
+        storeCargo(storedCargo() - weight);
+        efficiencyChanged(oldEfficiency);
+        operationPerformed(VehicleOperation.UNLOAD_CARGO);
+        return OperationStatus.OK;
     }
 
     @Override
@@ -103,31 +130,55 @@ public class Truck extends LandVehicle implements FuelConsumable, CargoCarrier,
 
     @Override
     public double getCurrentCargo() {
-        return currentCargo;
+        return storedCargo();
     }
 
     // Maintainable Methods
     @Override
-    public void scheduleMaintenance() {
+    public synchronized void scheduleMaintenance() {
         maintenanceNeeded = needsMaintenance();
     }
 
+    @Override
+    public boolean isMaintenanceScheduled() {
+        return maintenanceNeeded;
+    }
+
+    @Override
+    public synchronized void setMaintenanceScheduled(boolean scheduled) {
+        maintenanceNeeded = scheduled;
+    }
+
     @Override
     public boolean needsMaintenance() {
-        if (getCurrentMileage() > 10000) {
+        if (getCurrentMileage() > getMaintenanceThreshold()) {
             return true;
         }
         return false;
     }
 
+    @Override
+    public double getMaintenanceThreshold() {
+        return maintenanceThreshold;
+    }
+
+    // Reported once the vehicle's lock is let go
     @Override
     public void performMaintenance() {
-        if (maintenanceNeeded) {
-            maintenanceNeeded = false;
-            System.out.println("Maintenance Completed for vehicle ID: " + getId());
+        if (completeMaintenance()) {
+            Events.emit(EventType.MAINTENANCE_COMPLETED, getId(), "Maintenance Completed for vehicle ID: " + getId());
         }
         else {
-            System.out.println("Maintenance not needed for vehicle ID: " + getId());
+            Events.emit(EventType.MAINTENANCE_NOT_NEEDED, getId(), "Maintenance not needed for vehicle ID: " + getId());
+        }
+    }
+
+    private synchronized boolean completeMaintenance() {
+        if (!maintenanceNeeded) {
+            return false;
         }
+        maintenanceNeeded = false;
+        operationPerformed(VehicleOperation.PERFORM_MAINTENANCE);
+        return true;
     }
 }